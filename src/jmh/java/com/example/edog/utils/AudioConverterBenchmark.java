@@ -0,0 +1,48 @@
+package com.example.edog.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 下行音频：24k PCM 整段编码成 Opus 帧，以及 MP3 边解码边编码（回复音频的实际路径，不含网络）
+ * 吞吐单位是“每秒处理完几段回复”，配合 -prof gc 看每段回复的分配量
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AudioConverterBenchmark {
+
+    @Param({AudioFixtures.DEFAULT_MP3})
+    public String mp3;
+
+    private byte[] mp3Data;
+    private byte[] pcmData;
+
+    @Setup
+    public void setup() throws Exception {
+        mp3Data = AudioFixtures.readMp3(mp3);
+        pcmData = AudioFixtures.pcm24k(mp3Data);
+    }
+
+    @Benchmark
+    public List<byte[]> encodePcmToOpusFrames() {
+        return AudioConverter.encodePcmToOpusFrames(pcmData);
+    }
+
+    @Benchmark
+    public int transcodeMp3ToOpus(Blackhole bh) throws IOException {
+        return AudioConverter.transcodeMp3ToOpus(new ByteArrayInputStream(mp3Data), bh::consume);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.edog.utils;
+
+import io.github.jaredmdobson.concentus.OpusApplication;
+import io.github.jaredmdobson.concentus.OpusDecoder;
+import io.github.jaredmdobson.concentus.OpusEncoder;
+import io.github.jaredmdobson.concentus.OpusException;
+import io.github.jaredmdobson.concentus.OpusSignal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准用的音频夹具：coze_audio/ 下录好的 Coze 回复 MP3（在项目根目录运行）
+ * 下行用 MP3 转出的 24k PCM，上行把同一段语音重新编成设备格式（16k 单声道 60ms Opus 帧）
+ */
+final class AudioFixtures {
+
+    static final String DEFAULT_MP3 = "coze_audio/coze_audio_20251212_231009.mp3";
+
+    // 设备上行格式
+    static final int UPLINK_SAMPLE_RATE = 16000;
+    static final int UPLINK_FRAME_SIZE = UPLINK_SAMPLE_RATE * 60 / 1000;
+
+    private static final PrintStream NULL_OUT = new PrintStream(OutputStream.nullOutputStream());
+
+    private AudioFixtures() {
+    }
+
+    static byte[] readMp3(String path) throws IOException {
+        return Files.readAllBytes(Path.of(path));
+    }
+
+    static String readResource(String name) throws IOException {
+        try (InputStream in = AudioFixtures.class.getResourceAsStream("/" + name)) {
+            if (in == null) throw new IOException("找不到夹具: " + name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * MP3 → 设备下行 Opus 帧 → 24k 单声道 16-bit 小端 PCM
+     */
+    static byte[] pcm24k(byte[] mp3) throws OpusException {
+        return decodeFrames(AudioConverter.convertMp3BytesToOpusFrames(mp3), AudioConverter.SAMPLE_RATE);
+    }
+
+    /**
+     * 同一段语音的 16k 单声道 16-bit 小端 PCM（识别链路的采样格式）
+     */
+    static byte[] pcm16k(byte[] mp3) throws OpusException {
+        return decodeFrames(AudioConverter.convertMp3BytesToOpusFrames(mp3), UPLINK_SAMPLE_RATE);
+    }
+
+    /**
+     * 同一段语音编成设备上行的 16k 单声道 60ms Opus 帧
+     */
+    static List<byte[]> uplinkFrames(byte[] mp3) throws OpusException {
+        byte[] pcmBytes = pcm16k(mp3);
+        short[] pcm = new short[pcmBytes.length / 2];
+        ByteBuffer.wrap(pcmBytes).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(pcm);
+
+        OpusEncoder encoder = new OpusEncoder(UPLINK_SAMPLE_RATE, 1, OpusApplication.OPUS_APPLICATION_VOIP);
+        encoder.setSignalType(OpusSignal.OPUS_SIGNAL_VOICE);
+        byte[] packet = new byte[1500];
+        List<byte[]> frames = new ArrayList<>();
+        for (int i = 0; i + UPLINK_FRAME_SIZE <= pcm.length; i += UPLINK_FRAME_SIZE) {
+            int n = encoder.encode(pcm, i, UPLINK_FRAME_SIZE, packet, 0, packet.length);
+            byte[] frame = new byte[n];
+            System.arraycopy(packet, 0, frame, 0, n);
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    /**
+     * 被测代码在热路径上直接打 System.out，基准期间丢弃，避免控制台输出主导测量结果
+     */
+    static PrintStream silenceStdout() {
+        PrintStream original = System.out;
+        System.setOut(NULL_OUT);
+        return original;
+    }
+
+    private static byte[] decodeFrames(List<byte[]> frames, int sampleRate) throws OpusException {
+        OpusDecoder decoder = new OpusDecoder(sampleRate, 1);
+        short[] pcm = new short[5760];
+        ByteBuffer out = ByteBuffer.allocate(frames.size() * sampleRate * 120 / 1000 * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (byte[] frame : frames) {
+            int samples = decoder.decode(frame, 0, frame.length, pcm, 0, pcm.length, false);
+            for (int i = 0; i < samples; i++) out.putShort(pcm[i]);
+        }
+        byte[] result = new byte[out.position()];
+        out.flip();
+        out.get(result);
+        return result;
+    }
+}
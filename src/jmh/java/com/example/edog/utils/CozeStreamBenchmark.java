@@ -0,0 +1,40 @@
+package com.example.edog.utils;
+
+import okhttp3.OkHttpClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coze 流式响应解析：按一次完整对话录下的 SSE 文本（delta、completed、音频链接、[DONE]）走一遍 SseParser
+ * 解析器的日志是 debug 级别，基准的 logback.xml 按生产默认的 INFO 输出，不打印
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CozeStreamBenchmark {
+
+    @Param({"coze_stream.sse"})
+    public String transcript;
+
+    private CozeAPI cozeAPI;
+    private String streamData;
+
+    @Setup
+    public void setup() throws Exception {
+        cozeAPI = new CozeAPI(new OkHttpClient());
+        streamData = AudioFixtures.readResource(transcript);
+    }
+
+    @Benchmark
+    public String[] processStreamResponse() {
+        return cozeAPI.processStreamResponse(streamData);
+    }
+}
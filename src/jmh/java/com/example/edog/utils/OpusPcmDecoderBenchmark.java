@@ -0,0 +1,75 @@
+package com.example.edog.utils;
+
+import com.example.edog.configurer.EdogProperties;
+import io.github.jaredmdobson.concentus.OpusException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上行音频：AliyunRealtimeASR.sendOpusStream 里的解码 + PCM 打包 + VAD 门控，不含送识别服务
+ * 每次调用处理一帧 60ms，帧按录音顺序循环，解码器状态和线上一样连续
+ * WebSocket 负载分堆内（Tomcat 默认）和直接缓冲两种
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class OpusPcmDecoderBenchmark {
+
+    @Param({AudioFixtures.DEFAULT_MP3})
+    public String mp3;
+
+    private ByteBuffer[] heapFrames;
+    private ByteBuffer[] directFrames;
+    private OpusPcmDecoder decoder;
+    private VoiceActivityDetector vad;
+    private int next = 0;
+
+    @Setup
+    public void setup() throws Exception {
+        List<byte[]> frames = AudioFixtures.uplinkFrames(AudioFixtures.readMp3(mp3));
+        heapFrames = new ByteBuffer[frames.size()];
+        directFrames = new ByteBuffer[frames.size()];
+        for (int i = 0; i < frames.size(); i++) {
+            byte[] frame = frames.get(i);
+            heapFrames[i] = ByteBuffer.wrap(frame);
+            directFrames[i] = ByteBuffer.allocateDirect(frame.length).put(frame).flip();
+        }
+        decoder = new OpusPcmDecoder(AudioFixtures.UPLINK_SAMPLE_RATE);
+        EdogProperties.Vad config = new EdogProperties.Vad();
+        vad = new VoiceActivityDetector(AudioFixtures.UPLINK_SAMPLE_RATE, config.getStartMs(), config.getHangoverMs(),
+                config.getEnergyMarginDb(), config.getMinEnergyDb());
+    }
+
+    @Benchmark
+    public byte[] decodeHeap() throws OpusException {
+        return decoder.decode(nextFrame(heapFrames));
+    }
+
+    @Benchmark
+    public byte[] decodeDirect() throws OpusException {
+        return decoder.decode(nextFrame(directFrames));
+    }
+
+    @Benchmark
+    public boolean decodeAndGate() throws OpusException {
+        byte[] pcm = decoder.decode(nextFrame(heapFrames));
+        return pcm != null && vad.process(decoder.lastPcm(), decoder.lastSampleCount());
+    }
+
+    private ByteBuffer nextFrame(ByteBuffer[] frames) {
+        ByteBuffer frame = frames[next];
+        next = next + 1 == frames.length ? 0 : next + 1;
+        // 解码器按 position/remaining 读取，不移动 position，复用同一个缓冲无需 rewind
+        return frame;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.edog.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PinyinUtils 新旧实现对比：转拼音、单次相似度；
+ * 以及一句识别文本对一个账号全部命令的匹配：旧的逐条转拼音求余弦 vs CommandIndex 的二元组位图
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PinyinUtilsBenchmark {
+
+    private static final String[] COMMANDS = {
+            "前进", "后退", "左转", "右转", "停止", "坐下", "站起来", "趴下", "握手", "摇尾巴",
+            "跳舞", "转圈", "打招呼", "伸懒腰", "向前走三步", "向后退两步", "原地踏步", "抬头", "低头", "休息一下"
+    };
+
+    private String utterance;
+    private String utterancePinyin;
+    private String[] commandPinyin;
+    private CommandIndex commandIndex;
+
+    @Setup
+    public void setup() {
+        utterance = "小狗向前走三步。";
+        utterancePinyin = PinyinUtils.toPinyin(utterance);
+        commandPinyin = new String[COMMANDS.length];
+        List<String[]> commands = new ArrayList<>(COMMANDS.length);
+        for (int i = 0; i < COMMANDS.length; i++) {
+            commandPinyin[i] = PinyinUtils.toPinyin(COMMANDS[i]);
+            commands.add(new String[]{COMMANDS[i], "cmd" + i});
+        }
+        commandIndex = new CommandIndex(commands);
+    }
+
+    @Benchmark
+    public String toPinyinLegacy() {
+        return LegacyPinyinUtils.toPinyin(utterance);
+    }
+
+    @Benchmark
+    public String toPinyin() {
+        return PinyinUtils.toPinyin(utterance);
+    }
+
+    @Benchmark
+    public double similarityLegacy() {
+        return LegacyPinyinUtils.similarity(utterancePinyin, commandPinyin[14]);
+    }
+
+    @Benchmark
+    public double similarity() {
+        return PinyinUtils.similarity(utterancePinyin, commandPinyin[14]);
+    }
+
+    @Benchmark
+    public int matchCommandLegacy() {
+        String pinyin = LegacyPinyinUtils.toPinyin(utterance);
+        int best = -1;
+        double bestScore = -1;
+        for (int i = 0; i < commandPinyin.length; i++) {
+            double score = LegacyPinyinUtils.similarity(pinyin, commandPinyin[i]);
+            if (score > bestScore) {
+                bestScore = score;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    @Benchmark
+    public CommandIndex.Match matchCommandIndex() {
+        // 阈值放到 0，保证每次都走完整的逐条打分
+        return commandIndex.match(utterance, 0, 0);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.edog.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 识别录音落盘：一整句 16k PCM 写成 WAV（含文件创建和写盘，反复覆盖同一个临时文件）
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WavFileUtilBenchmark {
+
+    @Param({AudioFixtures.DEFAULT_MP3})
+    public String mp3;
+
+    private byte[] pcmData;
+    private File output;
+    private PrintStream stdout;
+
+    @Setup
+    public void setup() throws Exception {
+        pcmData = AudioFixtures.pcm16k(AudioFixtures.readMp3(mp3));
+        output = Files.createTempFile("edog-bench", ".wav").toFile();
+        stdout = AudioFixtures.silenceStdout();
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(stdout);
+        output.delete();
+    }
+
+    @Benchmark
+    public long savePcmAsWav() throws IOException {
+        WavFileUtil.savePcmAsWav(pcmData, output);
+        return output.length();
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.edog.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 命令行参数：--key=value，未给出的取默认值
+ */
+final class Args {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    Args(String[] argv) {
+        for (String arg : argv) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("无法识别的参数: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                values.put(arg.substring(2), "true");
+            } else {
+                values.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+    }
+
+    String get(String key, String def) {
+        return values.getOrDefault(key, def);
+    }
+
+    int getInt(String key, int def) {
+        String v = values.get(key);
+        return v == null ? def : Integer.parseInt(v);
+    }
+
+    long getLong(String key, long def) {
+        String v = values.get(key);
+        return v == null ? def : Long.parseLong(v);
+    }
+
+    boolean getBool(String key, boolean def) {
+        String v = values.get(key);
+        return v == null ? def : Boolean.parseBoolean(v);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.edog.loadtest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 假识别服务 + 假 Coze/CDN，可以和压测端放在同一进程（LoadTest --fakes=true），
+ * 也可以单独起一个进程，避免和压测端抢 CPU：
+ *   mvn -Ploadtest compile exec:exec -Dloadtest.main=com.example.edog.loadtest.FakeBackend
+ *
+ * 服务端需以 src/loadtest/resources/edog-loadtest.yaml 启动，把识别网关和 Coze 地址指到这里
+ */
+public final class FakeBackend {
+
+    static final List<String> QUESTIONS = List.of(
+            "今天天气怎么样", "给我讲个笑话", "你叫什么名字", "陪我聊聊天吧", "明天要带伞吗", "你会唱歌吗");
+    static final List<String> REPLIES = List.of(
+            "汪汪！今天阳光很好，适合出去散步，记得带上水哦。",
+            "好呀，有一只小狗去面包店，说要一个汪仔馒头，老板说我们只有汪仔小馒头。",
+            "我是你的小狗伙伴，你可以叫我小汪，想让我做什么就告诉我吧。",
+            "当然可以，我最喜欢陪你聊天了，今天过得开心吗？");
+
+    private final FakeNlsServer nls;
+    private final FakeCozeServer coze;
+
+    FakeBackend(Args args) throws Exception {
+        String mp3 = args.get("mp3", LoadTest.DEFAULT_MP3);
+        nls = new FakeNlsServer(args.getInt("nls-port", 8101), QUESTIONS,
+                args.getLong("nls-start-delay-ms", 50), args.getLong("nls-end-silence-ms", 400));
+        coze = new FakeCozeServer(args.getInt("coze-port", 8102), REPLIES, Files.readAllBytes(Path.of(mp3)),
+                args.getLong("coze-first-token-ms", 600), args.getLong("coze-delta-interval-ms", 40),
+                args.getLong("cdn-bytes-per-second", 0), args.getBool("unique-replies", true));
+    }
+
+    void start() {
+        nls.start();
+        coze.start();
+    }
+
+    void stop() {
+        try {
+            nls.stop(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        coze.stop();
+    }
+
+    String report() {
+        return String.format("[fake] 识别任务=%d 断句=%d 对话=%d 音频下载=%d",
+                nls.getTaskCount(), nls.getSentenceCount(), coze.getChatCount(), coze.getDownloadCount());
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Args args = new Args(argv);
+        FakeBackend backend = new FakeBackend(args);
+        backend.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(backend::stop));
+        long interval = args.getLong("report-interval-s", 5) * 1000;
+        while (true) {
+            Thread.sleep(interval);
+            System.out.println(backend.report());
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.edog.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coze /v3/chat 流式接口和音频 CDN 的本地替身
+ * POST /v3/chat：等 firstTokenMs 后按 deltaIntervalMs 逐字推 conversation.message.delta，再推一条音频链接，最后 completed + [DONE]
+ * GET /audio/*.mp3：返回夹具 MP3，可按 cdnBytesPerSecond 限速模拟 CDN 下载
+ *
+ * uniqueReplies 为 true 时每次回复文本带序号，服务端的回复音频缓存不会命中，每轮都走下载 + 转码
+ */
+final class FakeCozeServer {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final List<String> replies;
+    private final byte[] mp3;
+    private final long firstTokenMs;
+    private final long deltaIntervalMs;
+    private final long cdnBytesPerSecond;
+    private final boolean uniqueReplies;
+    private final AtomicInteger nextReply = new AtomicInteger();
+    private final AtomicLong chats = new AtomicLong();
+    private final AtomicLong downloads = new AtomicLong();
+
+    FakeCozeServer(int port, List<String> replies, byte[] mp3, long firstTokenMs, long deltaIntervalMs,
+                   long cdnBytesPerSecond, boolean uniqueReplies) throws IOException {
+        this.replies = replies;
+        this.mp3 = mp3;
+        this.firstTokenMs = firstTokenMs;
+        this.deltaIntervalMs = deltaIntervalMs;
+        this.cdnBytesPerSecond = cdnBytesPerSecond;
+        this.uniqueReplies = uniqueReplies;
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        // 每个流式响应占一个线程睡眠推送，替身本身不是被测对象
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "fake-coze-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        server.setExecutor(executor);
+        server.createContext("/v3/chat", this::chat);
+        server.createContext("/audio/", this::audio);
+    }
+
+    void start() {
+        server.start();
+        System.out.println("[fake-coze] 监听 http://127.0.0.1:" + server.getAddress().getPort() + "/v3/chat");
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    long getChatCount() {
+        return chats.get();
+    }
+
+    long getDownloadCount() {
+        return downloads.get();
+    }
+
+    private void chat(HttpExchange exchange) {
+        try {
+            try (InputStream in = exchange.getRequestBody()) {
+                in.readAllBytes();
+            }
+            int n = nextReply.getAndIncrement();
+            String reply = replies.get(Math.floorMod(n, replies.size()));
+            if (uniqueReplies) reply = reply + "（第" + (n + 1) + "次）";
+            long chatId = chats.incrementAndGet();
+            String audioUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/audio/reply-" + chatId + ".mp3";
+
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+
+            event(out, "conversation.chat.created", chatNode(chatId, "created"));
+            event(out, "conversation.chat.in_progress", chatNode(chatId, "in_progress"));
+            sleep(firstTokenMs);
+            int i = 0;
+            while (i < reply.length()) {
+                int end = Math.min(reply.length(), i + 2);
+                event(out, "conversation.message.delta", messageNode(chatId, reply.substring(i, end)));
+                i = end;
+                sleep(deltaIntervalMs);
+            }
+            event(out, "conversation.message.completed", messageNode(chatId, reply));
+            event(out, "conversation.message.delta", messageNode(chatId, audioUrl));
+            event(out, "conversation.message.completed", messageNode(chatId, audioUrl));
+            event(out, "conversation.chat.completed", chatNode(chatId, "completed"));
+            out.write("event:done\ndata:\"[DONE]\"\n\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } catch (IOException e) {
+            // 服务端取消（打断）时会提前断开
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void audio(HttpExchange exchange) {
+        try {
+            downloads.incrementAndGet();
+            exchange.getResponseHeaders().set("Content-Type", "audio/mpeg");
+            exchange.sendResponseHeaders(200, mp3.length);
+            OutputStream out = exchange.getResponseBody();
+            if (cdnBytesPerSecond <= 0) {
+                out.write(mp3);
+                return;
+            }
+            // 每 50ms 写一块，按限速摊开
+            int chunk = (int) Math.max(1, cdnBytesPerSecond / 20);
+            for (int off = 0; off < mp3.length; off += chunk) {
+                out.write(mp3, off, Math.min(chunk, mp3.length - off));
+                out.flush();
+                sleep(50);
+            }
+        } catch (IOException e) {
+            // 服务端取消下载
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void event(OutputStream out, String name, ObjectNode data) throws IOException {
+        out.write(("event:" + name + "\ndata:" + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static ObjectNode chatNode(long chatId, String status) {
+        ObjectNode node = MAPPER.createObjectNode()
+                .put("id", "chat-" + chatId)
+                .put("conversation_id", "conv-" + chatId)
+                .put("bot_id", "loadtest")
+                .put("status", status);
+        node.putObject("last_error").put("code", 0).put("msg", "");
+        return node;
+    }
+
+    private static ObjectNode messageNode(long chatId, String content) {
+        return MAPPER.createObjectNode()
+                .put("id", "msg-" + chatId)
+                .put("conversation_id", "conv-" + chatId)
+                .put("bot_id", "loadtest")
+                .put("chat_id", "chat-" + chatId)
+                .put("role", "assistant")
+                .put("type", "answer")
+                .put("content", content)
+                .put("content_type", "text");
+    }
+
+    private static void sleep(long ms) throws IOException {
+        if (ms <= 0) return;
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        }
+    }
+}
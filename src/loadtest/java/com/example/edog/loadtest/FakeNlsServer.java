@@ -0,0 +1,193 @@
+package com.example.edog.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 阿里云实时识别（SpeechTranscriber）的本地替身，讲同一套 WebSocket 协议，NLS SDK 把网关地址指过来即可
+ * StartTranscription → TranscriptionStarted；收到有声 PCM 时发 SentenceBegin，连续 endSilenceMs 没有有声数据后发 SentenceEnd，
+ * 识别文本从预设的问题里轮流取；StopTranscription → TranscriptionCompleted
+ *
+ * 服务端的 VAD 会拦下静音，所以断句按墙钟判断，而不是数静音帧
+ */
+final class FakeNlsServer extends WebSocketServer {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final List<String> questions;
+    private final long startDelayMs;
+    private final long endSilenceMs;
+    private final ScheduledExecutorService scheduler;
+    private final Map<WebSocket, Task> tasks = new ConcurrentHashMap<>();
+    private final AtomicInteger nextQuestion = new AtomicInteger();
+    private final AtomicLong sentences = new AtomicLong();
+
+    /**
+     * @param startDelayMs 模拟网关握手到 TranscriptionStarted 的耗时
+     * @param endSilenceMs 说话停止多久后断句
+     */
+    FakeNlsServer(int port, List<String> questions, long startDelayMs, long endSilenceMs) {
+        super(new InetSocketAddress("127.0.0.1", port));
+        this.questions = questions;
+        this.startDelayMs = startDelayMs;
+        this.endSilenceMs = endSilenceMs;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "fake-nls");
+            t.setDaemon(true);
+            return t;
+        });
+        setReuseAddr(true);
+    }
+
+    long getSentenceCount() {
+        return sentences.get();
+    }
+
+    int getTaskCount() {
+        return tasks.size();
+    }
+
+    @Override
+    public void onStart() {
+        scheduler.scheduleWithFixedDelay(this::endpoint, 20, 20, TimeUnit.MILLISECONDS);
+        System.out.println("[fake-nls] 监听 ws://127.0.0.1:" + getPort() + "/ws/v1");
+    }
+
+    @Override
+    public void onOpen(WebSocket conn, ClientHandshake handshake) {
+    }
+
+    @Override
+    public void onMessage(WebSocket conn, String message) {
+        try {
+            JsonNode header = MAPPER.readTree(message).path("header");
+            String name = header.path("name").asText();
+            String taskId = header.path("task_id").asText();
+            if ("StartTranscription".equals(name)) {
+                Task task = new Task(conn, taskId);
+                tasks.put(conn, task);
+                scheduler.schedule(() -> task.send("TranscriptionStarted",
+                        MAPPER.createObjectNode().put("session_id", UUID.randomUUID().toString().replace("-", ""))),
+                        startDelayMs, TimeUnit.MILLISECONDS);
+            } else if ("StopTranscription".equals(name)) {
+                Task task = tasks.remove(conn);
+                if (task == null) return;
+                synchronized (task) {
+                    if (task.inSentence) task.endSentence();
+                }
+                task.send("TranscriptionCompleted", MAPPER.createObjectNode());
+            }
+        } catch (Exception e) {
+            System.err.println("[fake-nls] 无法解析指令: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(WebSocket conn, ByteBuffer pcm) {
+        Task task = tasks.get(conn);
+        if (task == null) return;
+        ByteBuffer le = pcm.order(ByteOrder.LITTLE_ENDIAN);
+        int samples = le.remaining() / 2;
+        double sum = 0;
+        for (int i = 0; i < samples; i++) {
+            short s = le.getShort(le.position() + i * 2);
+            sum += (double) s * s;
+        }
+        boolean speech = samples > 0 && Math.sqrt(sum / samples) >= Fixtures.SPEECH_RMS;
+        synchronized (task) {
+            task.audioMs += samples * 1000L / Fixtures.SAMPLE_RATE;
+            if (!speech) return;
+            task.lastSpeechAt = System.currentTimeMillis();
+            if (!task.inSentence) {
+                task.inSentence = true;
+                task.beginAudioMs = task.audioMs;
+                task.send("SentenceBegin", MAPPER.createObjectNode()
+                        .put("index", task.index + 1).put("time", task.audioMs));
+            }
+        }
+    }
+
+    @Override
+    public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        tasks.remove(conn);
+    }
+
+    @Override
+    public void onError(WebSocket conn, Exception ex) {
+        if (conn != null) tasks.remove(conn);
+        System.err.println("[fake-nls] 连接异常: " + ex.getMessage());
+    }
+
+    @Override
+    public void stop(int timeout) throws InterruptedException {
+        scheduler.shutdownNow();
+        super.stop(timeout);
+    }
+
+    /**
+     * 说话停止超过 endSilenceMs 的任务断句
+     */
+    private void endpoint() {
+        long now = System.currentTimeMillis();
+        for (Task task : tasks.values()) {
+            synchronized (task) {
+                if (task.inSentence && now - task.lastSpeechAt >= endSilenceMs) task.endSentence();
+            }
+        }
+    }
+
+    private final class Task {
+        final WebSocket conn;
+        final String taskId;
+        boolean inSentence = false;
+        long lastSpeechAt = 0;
+        long audioMs = 0;
+        long beginAudioMs = 0;
+        int index = 0;
+
+        Task(WebSocket conn, String taskId) {
+            this.conn = conn;
+            this.taskId = taskId;
+        }
+
+        void endSentence() {
+            inSentence = false;
+            index++;
+            String text = questions.get(Math.floorMod(nextQuestion.getAndIncrement(), questions.size()));
+            send("SentenceEnd", MAPPER.createObjectNode()
+                    .put("index", index).put("time", audioMs).put("begin_time", beginAudioMs)
+                    .put("result", text).put("confidence", 0.95));
+            sentences.incrementAndGet();
+        }
+
+        void send(String name, ObjectNode payload) {
+            ObjectNode message = MAPPER.createObjectNode();
+            message.putObject("header")
+                    .put("namespace", "SpeechTranscriber")
+                    .put("name", name)
+                    .put("status", 20000000)
+                    .put("status_text", "Gateway:SUCCESS:Success.")
+                    .put("message_id", UUID.randomUUID().toString().replace("-", ""))
+                    .put("task_id", taskId);
+            message.set("payload", payload);
+            if (conn.isOpen()) conn.send(message.toString());
+        }
+    }
+}
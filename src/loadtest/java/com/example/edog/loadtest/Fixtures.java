@@ -0,0 +1,91 @@
+package com.example.edog.loadtest;
+
+import com.example.edog.utils.AudioConverter;
+import io.github.jaredmdobson.concentus.OpusApplication;
+import io.github.jaredmdobson.concentus.OpusDecoder;
+import io.github.jaredmdobson.concentus.OpusEncoder;
+import io.github.jaredmdobson.concentus.OpusException;
+import io.github.jaredmdobson.concentus.OpusSignal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 压测音频：把 coze_audio/ 下录好的语音编成设备上行格式（16k 单声道 60ms Opus 帧）
+ */
+final class Fixtures {
+
+    static final int SAMPLE_RATE = 16000;
+    static final int FRAME_MS = 60;
+    static final int FRAME_SIZE = SAMPLE_RATE * FRAME_MS / 1000;
+
+    // 判定为有声帧的均方根能量（假识别服务用同一个阈值）
+    static final double SPEECH_RMS = 300;
+
+    private Fixtures() {
+    }
+
+    /**
+     * @param utteranceMs 每句话的时长，跳过开头的静音后截取
+     * @return 一句话的上行帧
+     */
+    static List<byte[]> utterance(String mp3Path, int utteranceMs) throws IOException, OpusException {
+        byte[] mp3 = Files.readAllBytes(Path.of(mp3Path));
+        List<byte[]> downlink = AudioConverter.convertMp3BytesToOpusFrames(mp3);
+
+        // 设备下行是 24k，直接按 16k 解码即可得到上行采样率的 PCM
+        OpusDecoder decoder = new OpusDecoder(SAMPLE_RATE, 1);
+        short[] pcm = new short[downlink.size() * 5760];
+        short[] frame = new short[5760];
+        int total = 0;
+        for (byte[] packet : downlink) {
+            int n = decoder.decode(packet, 0, packet.length, frame, 0, frame.length, false);
+            System.arraycopy(frame, 0, pcm, total, n);
+            total += n;
+        }
+
+        int start = 0;
+        while (start + FRAME_SIZE <= total && rms(pcm, start, FRAME_SIZE) < SPEECH_RMS) start += FRAME_SIZE;
+        int frames = Math.max(1, utteranceMs / FRAME_MS);
+
+        OpusEncoder encoder = newEncoder();
+        byte[] packet = new byte[1500];
+        List<byte[]> result = new ArrayList<>(frames);
+        for (int i = start; i + FRAME_SIZE <= total && result.size() < frames; i += FRAME_SIZE) {
+            int n = encoder.encode(pcm, i, FRAME_SIZE, packet, 0, packet.length);
+            result.add(copy(packet, n));
+        }
+        if (result.isEmpty()) throw new IOException("夹具里没有可用的语音: " + mp3Path);
+        return result;
+    }
+
+    /**
+     * 一帧静音，设备不说话时麦克风持续上送的内容
+     */
+    static byte[] silence() throws OpusException {
+        byte[] packet = new byte[1500];
+        int n = newEncoder().encode(new short[FRAME_SIZE], 0, FRAME_SIZE, packet, 0, packet.length);
+        return copy(packet, n);
+    }
+
+    private static double rms(short[] pcm, int offset, int length) {
+        double sum = 0;
+        for (int i = offset; i < offset + length; i++) sum += (double) pcm[i] * pcm[i];
+        return Math.sqrt(sum / Math.max(1, length));
+    }
+
+    private static OpusEncoder newEncoder() throws OpusException {
+        OpusEncoder encoder = new OpusEncoder(SAMPLE_RATE, 1, OpusApplication.OPUS_APPLICATION_VOIP);
+        encoder.setSignalType(OpusSignal.OPUS_SIGNAL_VOICE);
+        return encoder;
+    }
+
+    private static byte[] copy(byte[] packet, int length) {
+        byte[] frame = new byte[length];
+        System.arraycopy(packet, 0, frame, 0, length);
+        return frame;
+    }
+}
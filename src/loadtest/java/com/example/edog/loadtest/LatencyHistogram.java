@@ -0,0 +1,41 @@
+package com.example.edog.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * 记录全部样本（毫秒）并在报告时排序求分位数
+ * 几百路客户端跑几分钟只有几万个样本，直接保留原值比分桶更直观
+ */
+final class LatencyHistogram {
+
+    private long[] samples = new long[1024];
+    private int size = 0;
+
+    synchronized void record(long ms) {
+        if (size == samples.length) samples = Arrays.copyOf(samples, size * 2);
+        samples[size++] = ms;
+    }
+
+    synchronized int count() {
+        return size;
+    }
+
+    /**
+     * @return "n=… p50=… p90=… p99=… max=…"，没有样本时返回 "n=0"
+     */
+    String summary() {
+        long[] sorted;
+        synchronized (this) {
+            if (size == 0) return "n=0";
+            sorted = Arrays.copyOf(samples, size);
+        }
+        Arrays.sort(sorted);
+        return String.format("n=%d p50=%d p90=%d p99=%d max=%d", sorted.length,
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99), sorted[sorted.length - 1]);
+    }
+
+    private static long percentile(long[] sorted, double q) {
+        int index = (int) Math.ceil(q * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
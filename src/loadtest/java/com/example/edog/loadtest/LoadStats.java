@@ -0,0 +1,46 @@
+package com.example.edog.loadtest;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 所有模拟设备共用的统计
+ * 轮次延迟都以设备发出最后一帧语音为起点（含服务端 VAD 断句和识别服务断句）
+ */
+final class LoadStats {
+
+    // 连接建立耗时
+    final LatencyHistogram connect = new LatencyHistogram();
+    // 说完 → 收到 tts start（第一句文本）
+    final LatencyHistogram firstText = new LatencyHistogram();
+    // 说完 → 收到第一帧回复音频
+    final LatencyHistogram firstAudio = new LatencyHistogram();
+    // 说完 → 收到 tts end
+    final LatencyHistogram turnEnd = new LatencyHistogram();
+    // 回复音频到达间隔与 60ms 帧时钟的偏差（开播预填充之后）
+    final LatencyHistogram frameJitter = new LatencyHistogram();
+
+    final AtomicInteger connected = new AtomicInteger();
+    final AtomicLong connectFailures = new AtomicLong();
+    final AtomicLong disconnects = new AtomicLong();
+    final AtomicLong turns = new AtomicLong();
+    final AtomicLong timeouts = new AtomicLong();
+    // 设备端播放缓冲被播空（帧到得比播放慢）的次数
+    final AtomicLong underruns = new AtomicLong();
+    final AtomicLong framesReceived = new AtomicLong();
+    // 压测端自身的健康度：上一帧还没写出就到了下一拍、节拍线程迟到超过一帧
+    final AtomicLong uplinkStalls = new AtomicLong();
+    final AtomicLong lateTicks = new AtomicLong();
+
+    String report() {
+        return String.format("在线=%d 连接失败=%d 断开=%d 轮次=%d 超时=%d 播空=%d 收帧=%d 上行阻塞=%d 节拍迟到=%d%n"
+                        + "  连接(ms)     %s%n"
+                        + "  首句文本(ms) %s%n"
+                        + "  首帧音频(ms) %s%n"
+                        + "  回复结束(ms) %s%n"
+                        + "  帧抖动(ms)   %s",
+                connected.get(), connectFailures.get(), disconnects.get(), turns.get(), timeouts.get(),
+                underruns.get(), framesReceived.get(), uplinkStalls.get(), lateTicks.get(),
+                connect.summary(), firstText.summary(), firstAudio.summary(), turnEnd.summary(), frameJitter.summary());
+    }
+}
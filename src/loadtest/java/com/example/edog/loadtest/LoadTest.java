@@ -0,0 +1,99 @@
+package com.example.edog.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * /esp32 压测：模拟 N 台设备按实时节拍上送语音，统计端到端轮次延迟和回复音频的帧抖动
+ *
+ * 1. 服务端接到本地替身上启动（识别网关、Coze、CDN 都不出网）：
+ *      mvn spring-boot:run -Dspring-boot.run.arguments=--spring.config.additional-location=file:src/loadtest/resources/edog-loadtest.yaml
+ * 2. 压测（默认同进程启动替身）：
+ *      mvn -Ploadtest compile exec:exec -Dloadtest.args="--clients=200 --duration-s=300"
+ *
+ * 参数（--key=value）：
+ *   target          服务端地址，默认 ws://127.0.0.1:8080/esp32
+ *   clients         设备数，默认 50；ramp-ms 内均匀建连，默认 10000
+ *   duration-s      压测时长，默认 120；report-interval-s 报告周期，默认 5
+ *   utterance-ms    每句话时长，默认 1500；think-ms 两轮之间的停顿，默认 1000
+ *   turn-timeout-ms 说完后等 tts end 的上限，默认 30000
+ *   tick-threads    驱动帧时钟的线程数，默认 4
+ *   fakes           同进程启动替身，默认 true；替身参数见 FakeBackend
+ *   mp3             语音夹具，默认 coze_audio/ 下的录音
+ */
+public final class LoadTest {
+
+    static final String DEFAULT_MP3 = "coze_audio/coze_audio_20251212_231009.mp3";
+
+    public static void main(String[] argv) throws Exception {
+        Args args = new Args(argv);
+        URI target = URI.create(args.get("target", "ws://127.0.0.1:8080/esp32"));
+        int clients = args.getInt("clients", 50);
+        long rampMs = args.getLong("ramp-ms", 10_000);
+        long durationMs = args.getLong("duration-s", 120) * 1000;
+        long reportMs = args.getLong("report-interval-s", 5) * 1000;
+
+        List<byte[]> utterance = Fixtures.utterance(args.get("mp3", DEFAULT_MP3), args.getInt("utterance-ms", 1500));
+        byte[] silence = Fixtures.silence();
+        System.out.printf("[loadtest] 目标 %s, 设备 %d 台, 每句 %d 帧, 时长 %d s%n",
+                target, clients, utterance.size(), durationMs / 1000);
+
+        FakeBackend backend = null;
+        if (args.getBool("fakes", true)) {
+            backend = new FakeBackend(args);
+            backend.start();
+        }
+
+        LoadStats stats = new LoadStats();
+        AtomicInteger tickIndex = new AtomicInteger();
+        ScheduledExecutorService ticker = Executors.newScheduledThreadPool(args.getInt("tick-threads", 4), r -> {
+            Thread t = new Thread(r, "loadtest-tick-" + tickIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+
+        List<VoiceClient> devices = new ArrayList<>(clients);
+        long begin = System.currentTimeMillis();
+        long nextReport = begin + reportMs;
+        for (int i = 0; i < clients; i++) {
+            VoiceClient client = new VoiceClient(i, target, utterance, silence, args.getLong("think-ms", 1000),
+                    args.getLong("turn-timeout-ms", 30_000), stats, ticker);
+            devices.add(client);
+            client.connect(http);
+            if (clients > 1) Thread.sleep(rampMs / clients);
+            if (System.currentTimeMillis() >= nextReport) {
+                report(stats, backend, begin);
+                nextReport += reportMs;
+            }
+        }
+
+        long end = begin + durationMs;
+        while (System.currentTimeMillis() < end) {
+            Thread.sleep(Math.max(1, Math.min(nextReport, end) - System.currentTimeMillis()));
+            if (System.currentTimeMillis() >= nextReport) {
+                report(stats, backend, begin);
+                nextReport += reportMs;
+            }
+        }
+
+        devices.forEach(VoiceClient::close);
+        Thread.sleep(500);
+        System.out.println("[loadtest] ===== 最终结果 =====");
+        report(stats, backend, begin);
+        ticker.shutdownNow();
+        if (backend != null) backend.stop();
+        System.exit(0);
+    }
+
+    private static void report(LoadStats stats, FakeBackend backend, long begin) {
+        System.out.printf("[loadtest] +%ds %s%n", (System.currentTimeMillis() - begin) / 1000, stats.report());
+        if (backend != null) System.out.println(backend.report());
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.edog.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一台模拟的 ESP32
+ * 麦克风按 60ms 帧时钟持续上送：说话阶段发录好的语音帧，其余时间发静音帧；
+ * 说完后等服务端回复（tts start → 音频帧 → tts end），按设备播放时长等回复播完，思考 thinkMs 后说下一句
+ *
+ * 帧时钟由共用的调度线程驱动，WebSocket 用 JDK 的异步客户端，几百路设备不需要几百个发送线程
+ */
+final class VoiceClient implements WebSocket.Listener {
+
+    private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(Fixtures.FRAME_MS);
+    // 服务端开播时一次性突发的帧数，这些帧不计入抖动
+    private static final int PREFILL_FRAMES = 5;
+    // 设备播完后留给服务端解锁的余量
+    private static final long UNLOCK_MARGIN_MS = 300;
+
+    private enum Phase { THINKING, SPEAKING, WAITING, PLAYING }
+
+    private final int index;
+    private final URI target;
+    private final List<byte[]> utterance;
+    private final byte[] silence;
+    private final long thinkMs;
+    private final long turnTimeoutMs;
+    private final LoadStats stats;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile WebSocket socket;
+    private volatile boolean closing = false;
+    private ScheduledFuture<?> ticker;
+    private CompletableFuture<WebSocket> lastSend = CompletableFuture.completedFuture(null);
+    private final StringBuilder textBuffer = new StringBuilder();
+
+    // 以下状态都在 this 锁内读写（节拍线程和 WebSocket 回调线程）
+    private Phase phase = Phase.THINKING;
+    private long phaseUntil;
+    private int speechIndex;
+    private long nextTickAt;
+    private long speechEndAt;
+    private boolean textSeen;
+    private int turnFrames;
+    private long lastFrameAt;
+    private long playheadAt;
+
+    VoiceClient(int index, URI target, List<byte[]> utterance, byte[] silence, long thinkMs, long turnTimeoutMs,
+                LoadStats stats, ScheduledExecutorService scheduler) {
+        this.index = index;
+        this.target = target;
+        this.utterance = utterance;
+        this.silence = silence;
+        this.thinkMs = thinkMs;
+        this.turnTimeoutMs = turnTimeoutMs;
+        this.stats = stats;
+        this.scheduler = scheduler;
+    }
+
+    void connect(HttpClient http) {
+        long begin = System.nanoTime();
+        http.newWebSocketBuilder()
+                .buildAsync(target, this)
+                .whenComplete((ws, error) -> {
+                    if (error != null) {
+                        stats.connectFailures.incrementAndGet();
+                        System.err.println("[client-" + index + "] 连接失败: " + error.getMessage());
+                        return;
+                    }
+                    stats.connect.record((System.nanoTime() - begin) / 1_000_000);
+                    stats.connected.incrementAndGet();
+                    socket = ws;
+                    synchronized (this) {
+                        // 各设备的第一句话错开，避免所有设备同一拍开口
+                        enter(Phase.THINKING, now() + (long) (Math.random() * thinkMs));
+                        nextTickAt = System.nanoTime();
+                    }
+                    ticker = scheduler.scheduleAtFixedRate(this::tick, 0, Fixtures.FRAME_MS, TimeUnit.MILLISECONDS);
+                });
+    }
+
+    void close() {
+        closing = true;
+        ScheduledFuture<?> t = ticker;
+        if (t != null) t.cancel(false);
+        WebSocket ws = socket;
+        if (ws != null) {
+            try {
+                ws.sendClose(WebSocket.NORMAL_CLOSURE, "done");
+            } catch (Exception e) {
+                ws.abort();
+            }
+        }
+    }
+
+    /**
+     * 每 60ms 一拍：发一帧上行音频并推进状态
+     */
+    private void tick() {
+        WebSocket ws = socket;
+        if (ws == null) return;
+        byte[] frame;
+        synchronized (this) {
+            long nowNanos = System.nanoTime();
+            if (nowNanos - nextTickAt > FRAME_NANOS) stats.lateTicks.incrementAndGet();
+            nextTickAt = nowNanos + FRAME_NANOS;
+
+            long now = now();
+            switch (phase) {
+                case THINKING:
+                    if (now >= phaseUntil) {
+                        enter(Phase.SPEAKING, 0);
+                        speechIndex = 0;
+                    }
+                    break;
+                case WAITING:
+                    if (now >= phaseUntil) {
+                        stats.timeouts.incrementAndGet();
+                        enter(Phase.THINKING, now + thinkMs);
+                    }
+                    break;
+                case PLAYING:
+                    if (now >= phaseUntil) enter(Phase.THINKING, now + thinkMs);
+                    break;
+                default:
+                    break;
+            }
+
+            if (phase == Phase.SPEAKING) {
+                frame = utterance.get(speechIndex++);
+                if (speechIndex == utterance.size()) {
+                    speechEndAt = now;
+                    textSeen = false;
+                    turnFrames = 0;
+                    enter(Phase.WAITING, now + turnTimeoutMs);
+                }
+            } else {
+                frame = silence;
+            }
+
+            if (!lastSend.isDone()) {
+                // 上一帧还没写出：网络或服务端读得太慢，这一帧丢掉
+                stats.uplinkStalls.incrementAndGet();
+                return;
+            }
+            lastSend = ws.sendBinary(ByteBuffer.wrap(frame), true);
+        }
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        textBuffer.append(data);
+        if (last) {
+            String message = textBuffer.toString();
+            textBuffer.setLength(0);
+            onMessage(message);
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+        if (last) onFrame();
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        disconnected();
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        System.err.println("[client-" + index + "] 连接异常: " + error.getMessage());
+        disconnected();
+    }
+
+    private synchronized void onMessage(String message) {
+        if (phase != Phase.WAITING && phase != Phase.PLAYING) return;
+        if (!message.contains("\"type\":\"tts\"")) return;
+        long now = now();
+        if (message.contains("\"state\":\"start\"") && !textSeen) {
+            textSeen = true;
+            stats.firstText.record(now - speechEndAt);
+        } else if (message.contains("\"state\":\"end\"")) {
+            stats.turnEnd.record(now - speechEndAt);
+            stats.turns.incrementAndGet();
+            // 等设备把缓冲里的音频播完，服务端在同一时刻解锁；没有音频时服务端留 2 秒展示文本
+            long playbackEnd = turnFrames == 0 ? now + 2000 : Math.max(now, playheadAt);
+            enter(Phase.PLAYING, playbackEnd + UNLOCK_MARGIN_MS);
+        }
+    }
+
+    private synchronized void onFrame() {
+        stats.framesReceived.incrementAndGet();
+        if (phase != Phase.WAITING && phase != Phase.PLAYING) return;
+        long now = now();
+        if (turnFrames == 0) {
+            stats.firstAudio.record(now - speechEndAt);
+            playheadAt = now;
+        } else if (turnFrames >= PREFILL_FRAMES) {
+            stats.frameJitter.record(Math.abs(now - lastFrameAt - Fixtures.FRAME_MS));
+        }
+        // 设备播放模型：缓冲已播空说明供帧不及时
+        if (turnFrames > 0 && playheadAt < now) {
+            stats.underruns.incrementAndGet();
+            playheadAt = now;
+        }
+        playheadAt += Fixtures.FRAME_MS;
+        lastFrameAt = now;
+        turnFrames++;
+    }
+
+    private synchronized void disconnected() {
+        ScheduledFuture<?> t = ticker;
+        if (t != null) t.cancel(false);
+        if (socket != null) {
+            socket = null;
+            stats.connected.decrementAndGet();
+            // 压测结束时主动关闭的不算断开
+            if (!closing) stats.disconnects.incrementAndGet();
+        }
+    }
+
+    private void enter(Phase next, long until) {
+        phase = next;
+        phaseUntil = until;
+    }
+
+    private static long now() {
+        return System.currentTimeMillis();
+    }
+}
@@ -5,9 +5,6 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
 import org.springframework.boot.autoconfigure.data.mongo.MongoDataAutoConfiguration;
-import org.springframework.boot.CommandLineRunner;
-import org.springframework.context.annotation.Bean;
-import com.example.edog.utils.GetIotToken;
 
 @SpringBootApplication(exclude = {MongoAutoConfiguration.class, MongoDataAutoConfiguration.class})
 @MapperScan("com.example.edog.mapper") // 扫描Mapper接口所在的包
@@ -15,12 +12,4 @@ public class EdogApplication {
     public static void main(String[] args) {
         SpringApplication.run(EdogApplication.class, args);
     }
-
-    @Bean
-    public CommandLineRunner run() {
-        return args -> {
-            System.out.println("Application started. Initializing IoT Token...");
-            GetIotToken.refreshToken();
-        };
-    }
 }
\ No newline at end of file
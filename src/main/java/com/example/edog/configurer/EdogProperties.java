@@ -0,0 +1,225 @@
+package com.example.edog.configurer;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 语音链路可调参数，对应 application.yaml 中的 edog.* 配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "edog")
+public class EdogProperties {
+
+    private Audio audio = new Audio();
+    private Turn turn = new Turn();
+    private Heartbeat heartbeat = new Heartbeat();
+    private Vad vad = new Vad();
+    private Asr asr = new Asr();
+    private ReplyCache replyCache = new ReplyCache();
+    private Intent intent = new Intent();
+    private Http http = new Http();
+    private Tts tts = new Tts();
+    private Journal journal = new Journal();
+    private Iot iot = new Iot();
+    private Motion motion = new Motion();
+    private Device device = new Device();
+
+    @Data
+    public static class Audio {
+        // 音频节拍线程数，所有会话共用
+        private int pacerThreads = 2;
+        // 开播时一次性突发的帧数，用来预填设备端抖动缓冲（5 帧 = 300ms）
+        private int prefillFrames = 5;
+    }
+
+    @Data
+    public static class Turn {
+        // 同时处理的对话轮次上限（平台线程模式下即线程数）
+        private int maxConcurrent = 16;
+        // 全局排队中的轮次上限，超过直接拒绝
+        private int queueCapacity = 64;
+        // 单个会话最多排队的轮次，同一会话内严格串行
+        private int perSessionQueueLimit = 1;
+        // 运行在 Java 21+ 时改用虚拟线程执行
+        private boolean virtualThreads = false;
+    }
+
+    @Data
+    public static class Heartbeat {
+        // 时间轮 tick 时长与槽位数
+        private long tickMs = 100;
+        private int wheelSize = 512;
+        // WebSocket Ping 周期
+        private long pingIntervalMs = 5000;
+        // ASR 保活检查周期
+        private long asrKeepaliveIntervalMs = 500;
+    }
+
+    @Data
+    public static class Vad {
+        // 关闭后所有解码音频原样送识别
+        private boolean enabled = true;
+        // 连续语音多久判定开始说话
+        private int startMs = 120;
+        // 说话后静音多久判定结束，需大于识别服务端断句静音（800ms）
+        private int hangoverMs = 1000;
+        // 开始说话时补发之前缓存的音频，避免吞掉句首
+        private int preRollMs = 300;
+        // 语音能量需高出底噪的分贝数
+        private double energyMarginDb = 10;
+        // 绝对能量下限（dBFS）
+        private double minEnergyDb = -50;
+        // 静音期向识别服务补发保活数据的间隔，需小于服务端空闲超时（10s）
+        private long keepaliveMs = 3000;
+        // 回复播放期间继续做语音检测，用户持续说话时打断播放（需设备端有回声消除，否则喇叭声会打断自己）
+        private boolean bargeIn = false;
+        // 说话态持续多久判定为打断
+        private int bargeInMs = 300;
+    }
+
+    @Data
+    public static class Asr {
+        // 预热好随时可领用的识别会话数
+        private int poolSize = 4;
+        // 预热会话最长保留时长，超过后关闭重建
+        private long maxWarmAgeMs = 300_000;
+        // 预热会话静音保活间隔，需小于服务端空闲超时（10s）
+        private long warmKeepaliveMs = 3000;
+        // 维护线程周期：Token 检查、保活、补齐
+        private long maintenanceIntervalMs = 1000;
+        // 执行会话握手和关闭的线程数
+        private int ioThreads = 4;
+        // 识别服务网关地址，为空时使用 SDK 默认的上海网关；压测时指向本地假服务
+        private String url = "";
+        // 固定 Token，为空时用 AccessKey 申请并自动刷新
+        private String token = "";
+    }
+
+    @Data
+    public static class ReplyCache {
+        private boolean enabled = true;
+        // 缓存的 Opus 帧总字节上限
+        private long maxBytes = 64L * 1024 * 1024;
+        // 写入后过期时间
+        private long ttlMs = 24L * 60 * 60 * 1000;
+        // 超过此长度的回复基本不会重复，不缓存
+        private int maxTextLength = 200;
+        // 落盘目录，为空则只缓存在内存
+        private String persistDir = "";
+    }
+
+    @Data
+    public static class Intent {
+        // 请求智能体前先用本地命令索引匹配
+        private boolean enabled = true;
+        // 命中所需的最低拼音相似度（Dice 系数）
+        private double threshold = 0.85;
+        // 最高分需领先第二名的分差
+        private double minMargin = 0.1;
+    }
+
+    @Data
+    public static class Http {
+        // 连接池最多保留的空闲连接与保活时长
+        private int maxIdleConnections = 16;
+        private long keepAliveMs = 300_000;
+        // 并发请求上限（总数 / 单个域名）
+        private int maxRequests = 128;
+        private int maxRequestsPerHost = 32;
+        private long connectTimeoutMs = 5000;
+        // SSE 流两次事件之间的最长间隔也受此限制
+        private long readTimeoutMs = 30_000;
+        private long writeTimeoutMs = 10_000;
+    }
+
+    @Data
+    public static class Tts {
+        // 回复语音来源：coze 使用智能体返回的整段 MP3；baidu 按句送百度流式 TTS，第一句合成完即开播
+        private String mode = "coze";
+        // 等待百度 TTS 连接就绪（system.started）的上限
+        private long readyTimeoutMs = 3000;
+        // 逐句合成时连接的空闲超时，需大于 LLM 两句之间的间隔
+        private long idleTimeoutMs = 15000;
+        // 每种语音参数预先建好（已 system.started）的连接数，仅 baidu 模式生效
+        private int poolSize = 2;
+        // 预热连接最长保留时长，超过后关闭重建（需小于服务端空闲断开时间）
+        private long maxWarmAgeMs = 20_000;
+        // 语音参数多久没被用到就不再为其预热
+        private long warmConfigTtlMs = 600_000;
+        // 维护线程周期：清理过期连接、补齐预热
+        private long maintenanceIntervalMs = 1000;
+    }
+
+    @Data
+    public static class Journal {
+        // 关闭后语音链路不记录对话
+        private boolean enabled = true;
+        // 内存队列上限，写库跟不上时超出部分丢弃
+        private int queueCapacity = 10_000;
+        // 攒够多少条写一批
+        private int batchSize = 100;
+        // 最早一条入队后最多等多久就写
+        private long flushIntervalMs = 1000;
+        // 队列满时入队最多等待的时长，超时丢弃，不阻塞对话
+        private long offerTimeoutMs = 20;
+        // 单批写库失败的重试次数
+        private int maxRetries = 3;
+        // 关闭时等待队列写完的上限
+        private long shutdownTimeoutMs = 10_000;
+    }
+
+    @Data
+    public static class Iot {
+        // 执行 IoTDA 下发的线程数，同一设备的消息始终串行
+        private int senderThreads = 2;
+        // 单个设备排队中的消息上限，超过直接拒绝
+        private int maxQueuePerDevice = 64;
+        // 单条消息最多尝试次数（含首次）
+        private int maxAttempts = 4;
+        // 重试退避：base * 2^n，上限 max，再乘以 [0.5, 1) 的随机抖动
+        private long baseBackoffMs = 200;
+        private long maxBackoffMs = 5000;
+        // Token 距过期不足此时长就在后台刷新
+        private long tokenRefreshAheadMs = 3600_000;
+        private long tokenCheckIntervalMs = 60_000;
+        // 下发结果保留多久供查询
+        private long trackingTtlMs = 600_000;
+    }
+
+    @Data
+    public static class Device {
+        // 旧固件兼容（单狗部署）：机械狗、手机端、ESP32 语音连接未带账号时归到这个账号；
+        // 为空时不带账号的机械狗和手机端直接拒绝，固件需在绑定消息 / 连接地址里带 account
+        private String legacyAccount = "";
+
+        public String legacyAccountOrNull() {
+            return legacyAccount == null || legacyAccount.isEmpty() ? null : legacyAccount;
+        }
+    }
+
+    @Data
+    public static class Motion {
+        // 每个设备每秒最多下发的指令数（停止指令不受限），0 表示不限速
+        private double maxRatePerSecond = 5;
+        // 单个设备排队中的指令上限（运动指令会合并，只有其他指令会把队列撑满）
+        private int queueCapacity = 32;
+        // 参与合并的运动指令：未发送的旧运动指令被新的覆盖
+        private List<String> motionCommands = new ArrayList<>(List.of(
+                "trot_coze", "trot_back_coze", "turn_left_coze", "turn_right_coze",
+                "trot", "trot_back", "turn_left", "turn_right"));
+        // 停止指令：清掉未发送的运动指令并插队优先发送
+        private List<String> stopCommands = new ArrayList<>(List.of("stop_coze", "stop"));
+
+        /**
+         * 两条指令之间的最小间隔
+         */
+        public long minIntervalMs() {
+            return maxRatePerSecond <= 0 ? 0 : (long) (1000 / maxRatePerSecond);
+        }
+    }
+}
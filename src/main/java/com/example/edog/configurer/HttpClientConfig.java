@@ -0,0 +1,50 @@
+package com.example.edog.configurer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 全局共享的出站 HTTP 客户端
+ * Coze、音频 CDN、IoTDA、百度鉴权都走同一个 OkHttpClient：连接池复用 TCP/TLS 连接，
+ * 支持 HTTP/2 的服务端会在一条连接上多路复用，避免每轮对话重新握手
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Bean
+    public OkHttpClient sharedHttpClient(EdogProperties properties, MeterRegistry registry) {
+        EdogProperties.Http cfg = properties.getHttp();
+
+        ConnectionPool pool = new ConnectionPool(cfg.getMaxIdleConnections(), cfg.getKeepAliveMs(), TimeUnit.MILLISECONDS);
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(cfg.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(cfg.getMaxRequestsPerHost());
+
+        OkHttpClient client = new OkHttpClient.Builder()
+                .connectionPool(pool)
+                .dispatcher(dispatcher)
+                .connectTimeout(cfg.getConnectTimeoutMs(), TimeUnit.MILLISECONDS)
+                .readTimeout(cfg.getReadTimeoutMs(), TimeUnit.MILLISECONDS)
+                .writeTimeout(cfg.getWriteTimeoutMs(), TimeUnit.MILLISECONDS)
+                .retryOnConnectionFailure(true)
+                .build();
+
+        // 连接池指标
+        Gauge.builder("edog.http.pool.connections", pool, ConnectionPool::connectionCount)
+                .description("连接池中的连接总数").register(registry);
+        Gauge.builder("edog.http.pool.idle", pool, ConnectionPool::idleConnectionCount)
+                .description("连接池中的空闲连接数").register(registry);
+        Gauge.builder("edog.http.calls.running", dispatcher, Dispatcher::runningCallsCount)
+                .description("进行中的请求数").register(registry);
+        Gauge.builder("edog.http.calls.queued", dispatcher, Dispatcher::queuedCallsCount)
+                .description("排队中的异步请求数").register(registry);
+        return client;
+    }
+}
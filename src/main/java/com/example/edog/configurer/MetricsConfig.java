@@ -0,0 +1,133 @@
+package com.example.edog.configurer;
+
+import com.example.edog.service.AliyunRealtimeASR;
+import com.example.edog.service.AudioPacer;
+import com.example.edog.service.ConversationJournal;
+import com.example.edog.service.IotDispatcher;
+import com.example.edog.service.ReplyAudioCache;
+import com.example.edog.service.TranscriberPool;
+import com.example.edog.service.TtsConnectionManager;
+import com.example.edog.service.TurnExecutor;
+import com.example.edog.service.WebSocketServer;
+import com.example.edog.utils.HashedWheelTimer;
+import com.example.edog.utils.OrderWebSocketHandler;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 语音链路的状态指标，经 /actuator/prometheus 导出
+ * 各组件只维护自己的计数，这里统一注册成 Gauge / FunctionCounter，采集时才读取，不影响热路径
+ * 各阶段耗时见 TurnMetrics
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder sessionMetrics(WebSocketServer server, TurnExecutor turnExecutor, AudioPacer audioPacer) {
+        return registry -> {
+            Gauge.builder("edog.sessions.active", server, WebSocketServer::getSessionCount)
+                    .description("在线的 ESP32 会话数").register(registry);
+            Gauge.builder("edog.sessions.busy", server, WebSocketServer::getBusySessionCount)
+                    .description("正在回复的会话数").register(registry);
+            Gauge.builder("edog.turns.running", turnExecutor, TurnExecutor::getActiveTurns)
+                    .description("执行中的对话轮次").register(registry);
+            Gauge.builder("edog.turns.pending", turnExecutor, TurnExecutor::getQueuedTurns)
+                    .description("排队等待执行的对话轮次").register(registry);
+            FunctionCounter.builder("edog.turns.rejected", turnExecutor, TurnExecutor::getRejectedTurns)
+                    .description("执行器满载被拒绝的轮次").register(registry);
+            FunctionCounter.builder("edog.turns.completed", turnExecutor, TurnExecutor::getCompletedTurns)
+                    .description("已完成的轮次").register(registry);
+            Gauge.builder("edog.audio.streams", audioPacer, AudioPacer::getActiveStreams)
+                    .description("正在推送的回复音频流").register(registry);
+        };
+    }
+
+    /**
+     * 心跳、识别保活共用的时间轮：tick 延迟持续升高说明任务过重或线程被抢占，心跳会跟着晚到
+     */
+    @Bean
+    public MeterBinder timerMetrics(HashedWheelTimer sessionWheelTimer) {
+        return registry -> {
+            Gauge.builder("edog.timer.tick.lag", sessionWheelTimer, HashedWheelTimer::getTickLagMillis)
+                    .baseUnit("milliseconds").description("时间轮最近一次 tick 的延迟").register(registry);
+            Gauge.builder("edog.timer.tick.lag.max", sessionWheelTimer, HashedWheelTimer::getMaxTickLagMillis)
+                    .baseUnit("milliseconds").description("时间轮启动以来的最大 tick 延迟").register(registry);
+            Gauge.builder("edog.timer.pending", sessionWheelTimer, HashedWheelTimer::getPendingTimeouts)
+                    .description("挂在时间轮上的定时任务").register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder poolMetrics(TranscriberPool transcriberPool, TtsConnectionManager ttsConnectionManager,
+                                   ReplyAudioCache replyAudioCache) {
+        return registry -> {
+            Gauge.builder("edog.asr.pool.warm", transcriberPool, TranscriberPool::getWarmCount)
+                    .description("预热好的识别会话").register(registry);
+            Gauge.builder("edog.asr.pool.leased", transcriberPool, TranscriberPool::getLeasedCount)
+                    .description("已领用的识别会话").register(registry);
+            FunctionCounter.builder("edog.asr.pool.acquire", transcriberPool, TranscriberPool::getHits)
+                    .tag("result", "hit").description("识别会话领用次数").register(registry);
+            FunctionCounter.builder("edog.asr.pool.acquire", transcriberPool, TranscriberPool::getMisses)
+                    .tag("result", "miss").description("识别会话领用次数").register(registry);
+            FunctionCounter.builder("edog.asr.audio", AliyunRealtimeASR.class, c -> AliyunRealtimeASR.getForwardedMs())
+                    .tag("result", "forwarded").baseUnit("milliseconds").description("上行音频时长").register(registry);
+            FunctionCounter.builder("edog.asr.audio", AliyunRealtimeASR.class, c -> AliyunRealtimeASR.getSuppressedMs())
+                    .tag("result", "suppressed").baseUnit("milliseconds").description("上行音频时长").register(registry);
+
+            Gauge.builder("edog.tts.pool.warm", ttsConnectionManager, TtsConnectionManager::getWarmCount)
+                    .description("预热好的 TTS 连接").register(registry);
+            FunctionCounter.builder("edog.tts.pool.acquire", ttsConnectionManager, TtsConnectionManager::getHits)
+                    .tag("result", "hit").description("TTS 连接领用次数").register(registry);
+            FunctionCounter.builder("edog.tts.pool.acquire", ttsConnectionManager, TtsConnectionManager::getMisses)
+                    .tag("result", "miss").description("TTS 连接领用次数").register(registry);
+            Gauge.builder("edog.tts.handshake.avg", ttsConnectionManager, m -> m.getHandshakeStats().getAvgMs())
+                    .baseUnit("milliseconds").description("TTS 平均握手耗时").register(registry);
+            Gauge.builder("edog.tts.first.byte.avg", ttsConnectionManager, m -> m.getFirstByteStats().getAvgMs())
+                    .baseUnit("milliseconds").description("TTS 平均首包耗时").register(registry);
+
+            Gauge.builder("edog.reply.cache.entries", replyAudioCache, ReplyAudioCache::getEntryCount)
+                    .description("回复音频缓存条目数").register(registry);
+            FunctionCounter.builder("edog.reply.cache.requests", replyAudioCache, ReplyAudioCache::getHitCount)
+                    .tag("result", "hit").description("回复音频缓存查询次数").register(registry);
+            FunctionCounter.builder("edog.reply.cache.requests", replyAudioCache, ReplyAudioCache::getMissCount)
+                    .tag("result", "miss").description("回复音频缓存查询次数").register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder deliveryMetrics(ConversationJournal journal, IotDispatcher iotDispatcher) {
+        return registry -> {
+            Gauge.builder("edog.journal.queued", journal, ConversationJournal::getQueuedCount)
+                    .description("等待落库的对话记录").register(registry);
+            FunctionCounter.builder("edog.journal.records", journal, ConversationJournal::getWrittenCount)
+                    .tag("result", "written").description("对话记录").register(registry);
+            FunctionCounter.builder("edog.journal.records", journal, ConversationJournal::getDroppedCount)
+                    .tag("result", "dropped").description("对话记录").register(registry);
+            FunctionCounter.builder("edog.journal.records", journal, ConversationJournal::getFailedCount)
+                    .tag("result", "failed").description("对话记录").register(registry);
+
+            Gauge.builder("edog.iot.queued", iotDispatcher, IotDispatcher::getQueuedCount)
+                    .description("等待下发的 IoT 指令").register(registry);
+            FunctionCounter.builder("edog.iot.commands", iotDispatcher, IotDispatcher::getSentCount)
+                    .tag("result", "sent").description("IoT 指令").register(registry);
+            FunctionCounter.builder("edog.iot.commands", iotDispatcher, IotDispatcher::getFailedCount)
+                    .tag("result", "failed").description("IoT 指令").register(registry);
+            FunctionCounter.builder("edog.iot.commands", iotDispatcher, IotDispatcher::getRejectedCount)
+                    .tag("result", "rejected").description("IoT 指令").register(registry);
+            FunctionCounter.builder("edog.iot.commands", iotDispatcher, IotDispatcher::getCoalescedCount)
+                    .tag("result", "coalesced").description("IoT 指令").register(registry);
+            FunctionCounter.builder("edog.iot.commands", iotDispatcher, IotDispatcher::getDroppedCount)
+                    .tag("result", "dropped").description("IoT 指令").register(registry);
+            FunctionCounter.builder("edog.iot.retries", iotDispatcher, IotDispatcher::getRetriedCount)
+                    .description("IoT 指令重试次数").register(registry);
+
+            FunctionCounter.builder("edog.order.commands", OrderWebSocketHandler.class, c -> OrderWebSocketHandler.getCoalescedCount())
+                    .tag("result", "coalesced").description("发往机械狗未发送的指令").register(registry);
+            FunctionCounter.builder("edog.order.commands", OrderWebSocketHandler.class, c -> OrderWebSocketHandler.getDroppedCount())
+                    .tag("result", "dropped").description("发往机械狗未发送的指令").register(registry);
+        };
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.edog.configurer;
+
+import com.example.edog.utils.HashedWheelTimer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 全局共享的定时调度配置
+ */
+@Configuration
+public class SchedulerConfig {
+
+    /**
+     * 所有 ESP32 会话共用的时间轮，承载心跳和 ASR 保活任务
+     */
+    @Bean(destroyMethod = "stop")
+    public HashedWheelTimer sessionWheelTimer(EdogProperties properties) {
+        EdogProperties.Heartbeat heartbeat = properties.getHeartbeat();
+        return new HashedWheelTimer("session-wheel", heartbeat.getTickMs(), heartbeat.getWheelSize());
+    }
+}
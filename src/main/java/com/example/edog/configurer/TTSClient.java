@@ -9,8 +9,13 @@ import org.java_websocket.handshake.ServerHandshake;
 
 import java.net.URI;
 import java.nio.ByteBuffer;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
 /**
@@ -18,16 +23,31 @@ import java.util.function.Consumer;
  * - 支持边输入边播放
  * - 自动空文本保护
  * - 自动等待 system.started 后发送文本
+ * - 空闲超时挂在共享调度线程上，不再每个连接一个 Timer 线程
  */
 public class TTSClient extends WebSocketClient {
 
-    private final Consumer<byte[]> audioCallback;
-    private Timer idleTimer;
+    private volatile Consumer<byte[]> audioCallback;
     private static final long IDLE_TIMEOUT = 3000L;
+    private volatile long idleTimeout = IDLE_TIMEOUT;
+    private final ScheduledExecutorService idleScheduler;
+    private final Object idleLock = new Object();
+    private ScheduledFuture<?> idleTask;
+
+    // 耗时统计：建连 → system.started 为握手耗时，首次送文本 → 首包音频为首包耗时
+    private final long createdAt = System.currentTimeMillis();
+    private volatile long startedAt = 0;
+    private volatile long firstTextAt = 0;
+    private volatile long firstAudioAt = 0;
 
     @Getter
     private boolean finished = false;
-    private boolean systemReady = false;
+    private volatile boolean systemReady = false;
+    // 收到 system.started（或连接已失败）时放行
+    private final CountDownLatch ready = new CountDownLatch(1);
+    // 合成结束或连接关闭时回调一次；未设置时沿用旧行为，通知 OHOS 端 PCM_FINISHED
+    private volatile Runnable finishListener;
+    private final AtomicBoolean finishNotified = new AtomicBoolean(false);
 
     // 实时语音参数
     private int per;  // 发音人
@@ -38,19 +58,45 @@ public class TTSClient extends WebSocketClient {
     @Getter
     private long totalBytesSent = 0;
 
+    // 本连接使用的 Token，鉴权失败时据此作废
+    private final String accessToken;
+    // 百度鉴权失败的错误码：Token 无效 / Token 过期 / 鉴权失败
+    private static final Set<Integer> AUTH_ERROR_CODES = Set.of(110, 111, 3302);
+
     // ==================== 构造函数 ====================
 
     public TTSClient(Consumer<byte[]> audioCallback) throws Exception {
-        // ✅ 官方要求仅保留 access_token 与 per
+        this(audioCallback, TTSConfig.DEFAULT);
+    }
+
+    /**
+     * @param config 本次合成使用的语音参数（来自会话所属账号的语音配置）
+     */
+    public TTSClient(Consumer<byte[]> audioCallback, TTSConfig config) throws Exception {
+        this(audioCallback, config, SharedIdleScheduler.INSTANCE);
+    }
+
+    /**
+     * @param idleScheduler 承载空闲超时的共享调度器
+     */
+    public TTSClient(Consumer<byte[]> audioCallback, TTSConfig config, ScheduledExecutorService idleScheduler) throws Exception {
+        this(audioCallback, config, idleScheduler, BaiduAuthService.getAccessToken());
+    }
+
+    private TTSClient(Consumer<byte[]> audioCallback, TTSConfig config, ScheduledExecutorService idleScheduler,
+                      String accessToken) throws Exception {
+        // ✅ 官方要求仅保留 access_token 与 per（Token 已缓存，不再每次都请求）
         super(new URI("wss://aip.baidubce.com/ws/2.0/speech/publiccloudspeech/v1/tts"
-                + "?access_token=" + BaiduAuthService.getAccessToken()
-                + "&per=" + TTSConfig.getPer()));
+                + "?access_token=" + accessToken
+                + "&per=" + config.getPer()));
 
+        this.accessToken = accessToken;
         this.audioCallback = audioCallback;
-        this.per = TTSConfig.getPer();
-        this.spd = TTSConfig.getSpd();
-        this.pid = TTSConfig.getPid();
-        this.vol = TTSConfig.getVol();
+        this.idleScheduler = idleScheduler;
+        this.per = config.getPer();
+        this.spd = config.getSpd();
+        this.pid = config.getPid();
+        this.vol = config.getVol();
     }
 
     // ==================== 生命周期回调 ====================
@@ -88,19 +134,26 @@ public class TTSClient extends WebSocketClient {
 
             switch (type) {
                 case "system.started":
+                    startedAt = System.currentTimeMillis();
                     systemReady = true;
+                    ready.countDown();
                     System.out.println("✅ （TTS）系统初始化完成，可以发送文本");
                     break;
 
                 case "system.error":
                 case "error":
                     System.err.println("❌ TTS 错误消息: " + json);
+                    Integer code = json.getInteger("code");
+                    if (code != null && AUTH_ERROR_CODES.contains(code)) {
+                        BaiduAuthService.invalidate(accessToken);
+                    }
                     break;
 
                 case "system.finished":
                     finished = true;
-                    AudioWebSocketHandler.sendToOHOS("PCM_FINISHED");
+                    if (finishListener == null) AudioWebSocketHandler.sendToOHOS("PCM_FINISHED");
                     System.out.println("🏁 （TTS）所有文本合成完毕");
+                    notifyFinished();
                     close();
                     break;
 
@@ -118,9 +171,11 @@ public class TTSClient extends WebSocketClient {
         byte[] data = new byte[bytes.remaining()];
         bytes.get(data);
         totalBytesSent += data.length;
+        if (firstAudioAt == 0) firstAudioAt = System.currentTimeMillis();
 
-        if (audioCallback != null && data.length > 0) {
-            audioCallback.accept(data);
+        Consumer<byte[]> callback = audioCallback;
+        if (callback != null && data.length > 0) {
+            callback.accept(data);
         }
 
         System.out.println("🎵 （TTS）收到音频帧, 大小: " + data.length + "，累计: " + totalBytesSent + " 字节");
@@ -130,17 +185,67 @@ public class TTSClient extends WebSocketClient {
     @Override
     public void onClose(int code, String reason, boolean remote) {
         System.out.println("🔌 TTS 连接关闭: code=" + code + ", reason=" + reason);
+        // 握手被拒（Token 无效时网关返回 401/403）
+        if (startedAt == 0 && reason != null && (reason.contains("401") || reason.contains("403"))) {
+            BaiduAuthService.invalidate(accessToken);
+        }
         stopIdleTimer();
+        ready.countDown();
+        notifyFinished();
     }
 
     @Override
     public void onError(Exception ex) {
         System.err.println("❌ TTS 出错: " + ex.getMessage());
         stopIdleTimer();
+        ready.countDown();
     }
 
     // ==================== 主逻辑 ====================
 
+    /**
+     * 等待服务端 system.started
+     * @return true 表示可以发送文本；超时或连接失败返回 false
+     */
+    public boolean awaitReady(long timeoutMs) throws InterruptedException {
+        ready.await(timeoutMs, TimeUnit.MILLISECONDS);
+        return systemReady && isOpen();
+    }
+
+    /** 更换音频接收方（预热连接被领用时绑定） */
+    public void setAudioCallback(Consumer<byte[]> audioCallback) {
+        this.audioCallback = audioCallback;
+    }
+
+    /** 合成结束（system.finished）或连接关闭时回调，只回调一次 */
+    public void setOnFinished(Runnable listener) {
+        this.finishListener = listener;
+    }
+
+    /** 空闲超时，逐句送文本时需覆盖 LLM 两句之间的间隔；连接已建立时立即按新时长重新计时 */
+    public void setIdleTimeout(long idleTimeoutMs) {
+        this.idleTimeout = idleTimeoutMs;
+        resetIdleTimer();
+    }
+
+    public boolean isSystemReady() {
+        return systemReady;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /** 建连到 system.started 的耗时，未就绪返回 -1 */
+    public long getHandshakeMs() {
+        return startedAt == 0 ? -1 : startedAt - createdAt;
+    }
+
+    /** 首次送文本到收到首包音频的耗时，没有音频返回 -1 */
+    public long getFirstByteMs() {
+        return firstTextAt == 0 || firstAudioAt == 0 ? -1 : firstAudioAt - firstTextAt;
+    }
+
     /** ✅ 发送文本进行合成 */
     public void sendText(String text) {
         // 空值保护
@@ -161,7 +266,9 @@ public class TTSClient extends WebSocketClient {
         payload.put("text", text);
         msg.put("payload", payload);
 
+        if (firstTextAt == 0) firstTextAt = System.currentTimeMillis();
         send(msg.toJSONString());
+        resetIdleTimer();
         System.out.println("📤 （TTS）已发送文本: " + text);
     }
 
@@ -173,31 +280,51 @@ public class TTSClient extends WebSocketClient {
         System.out.println("📤 （TTS）已发送 system.finish");
     }
 
+    private void notifyFinished() {
+        Runnable listener = finishListener;
+        if (listener != null && finishNotified.compareAndSet(false, true)) {
+            listener.run();
+        }
+    }
+
     // ==================== 定时器逻辑 ====================
 
     private void startIdleTimer() {
-        if (idleTimer != null) idleTimer.cancel();
-        idleTimer = new Timer();
-        idleTimer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                System.out.println("⏳ 超过 3 秒无响应，自动关闭连接");
+        synchronized (idleLock) {
+            if (idleTask != null) idleTask.cancel(false);
+            long timeout = idleTimeout;
+            idleTask = idleScheduler.schedule(() -> {
+                System.out.println("⏳ 超过 " + timeout + " ms 无响应，自动关闭连接");
                 close();
-            }
-        }, IDLE_TIMEOUT);
+            }, timeout, TimeUnit.MILLISECONDS);
+        }
     }
 
     private void resetIdleTimer() {
-        if (idleTimer != null) {
-            idleTimer.cancel();
-            startIdleTimer();
+        synchronized (idleLock) {
+            if (idleTask != null) {
+                startIdleTimer();
+            }
         }
     }
 
     private void stopIdleTimer() {
-        if (idleTimer != null) {
-            idleTimer.cancel();
-            idleTimer = null;
+        synchronized (idleLock) {
+            if (idleTask != null) {
+                idleTask.cancel(false);
+                idleTask = null;
+            }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 未指定调度器时所有连接共用的空闲超时线程
+     */
+    private static final class SharedIdleScheduler {
+        static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "tts-idle");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+}
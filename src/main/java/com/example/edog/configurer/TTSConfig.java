@@ -1,20 +1,37 @@
 package com.example.edog.configurer;
 
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 
-/** 全局 TTS 参数缓存（无管理器版本） */
+/** 百度 TTS 参数（不可变，每个语音配置一份；可作为连接池的键） */
+@Getter
+@EqualsAndHashCode
 public class TTSConfig {
-    @Getter
-    private static volatile int per = 4;
-    @Getter
-    private static volatile int spd = 6;
-    @Getter
-    private static volatile int pid = 10;
-    @Getter
-    private static volatile int vol = 8;
 
-    public static synchronized void setVoiceParams(int p, int s, int pi, int v) {
-        per = p; spd = s; pid = pi; vol = v;
+    public static final TTSConfig DEFAULT = new TTSConfig(4, 6, 10, 8);
+
+    private final int per;  // 发音人
+    private final int spd;  // 语速 0-15
+    private final int pid;  // 音色
+    private final int vol;  // 音量 0-15
+
+    public TTSConfig(int per, int spd, int pid, int vol) {
+        this.per = per;
+        this.spd = spd;
+        this.pid = pid;
+        this.vol = vol;
     }
 
-}
\ No newline at end of file
+    /**
+     * 由账号的语速倍率（1.0 为正常）和音量（0-100）换算成百度参数
+     */
+    public static TTSConfig of(Double speedRatio, Integer volume) {
+        int spd = speedRatio == null ? DEFAULT.spd : clamp((int) Math.round(DEFAULT.spd * speedRatio), 0, 15);
+        int vol = volume == null ? DEFAULT.vol : clamp((int) Math.round(volume * 15 / 100.0), 0, 15);
+        return new TTSConfig(DEFAULT.per, spd, DEFAULT.pid, vol);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
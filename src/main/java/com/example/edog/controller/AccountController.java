@@ -2,7 +2,7 @@ package com.example.edog.controller;
 
 import com.example.edog.entity.Account;
 import com.example.edog.service.AccountService;
-import com.example.edog.service.WebSocketServer; // ✅ 引入 WebSocketServer
+import com.example.edog.service.VoiceProfileService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -16,6 +16,9 @@ public class AccountController {
     @Autowired
     private AccountService accountService;
 
+    @Autowired
+    private VoiceProfileService voiceProfileService;
+
     @GetMapping
     public ResponseEntity<List<Account>> getAllAccounts() {
         return ResponseEntity.ok(accountService.getAllAccounts());
@@ -43,9 +46,8 @@ public class AccountController {
         return ResponseEntity.ok(accountService.deleteAccount(account));
     }
 
-    /** * ✅ 修复后的 updateVoice 接口
-     * 不再调用 getPer/getSpd 等不存在的方法
-     * 改为调用 WebSocketServer 更新全局语音参数
+    /**
+     * 更新语音参数，只影响该账号下的会话
      */
     @PostMapping("/updateVoice")
     public ResponseEntity<Integer> updateVoice(@RequestBody Account account) {
@@ -53,10 +55,9 @@ public class AccountController {
         if (result > 0) {
             Account updated = accountService.getAccountByAccount(account.getAccount());
             if (updated != null) {
-                // 🔥 核心修复：调用 WebSocketServer 的静态方法更新参数
-                WebSocketServer.setVoiceParams(updated);
-                
-                System.out.println("🔄 已实时更新全局语音参数: voiceId=" + updated.getVoiceId()
+                voiceProfileService.update(updated);
+
+                System.out.println("🔄 已实时更新账号 " + updated.getAccount() + " 的语音参数: voiceId=" + updated.getVoiceId()
                         + ", speed=" + updated.getSpeedRatio()
                         + ", vol=" + updated.getVol());
             }
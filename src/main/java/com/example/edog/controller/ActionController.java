@@ -1,13 +1,15 @@
 package com.example.edog.controller;
 
-import com.example.edog.utils.GetIotToken;
-import com.example.edog.utils.IotHttpSender;
+import com.example.edog.service.IotDispatcher;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -16,10 +18,14 @@ public class ActionController {
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    @Autowired
+    private IotDispatcher iotDispatcher;
+
     /**
      * GET /action
      * 请求体: {"action_content": 1}
      * 接收 action_content，如果为 1 则发送 "trot" 到 IoT 平台。
+     * 下发是异步的：返回 202 和 trackingId，结果用 /action/status/{trackingId} 查询
      */
     @GetMapping(value = "/action", consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<String> receiveAction(@RequestBody(required = false) String body) {
@@ -51,39 +57,40 @@ public class ActionController {
                 messageToSend = "stop_coze";
             }
 
-            if (messageToSend != null) {
-                String token = GetIotToken.getToken();
-                if (token != null) {
-                    try {
-                        IotHttpSender.sendMessage(token, messageToSend);
-                        System.out.println("向设备发送: " + messageToSend);
-                    } catch (Exception e) {
-                        System.err.println("发送失败，尝试刷新 Token 重试...");
-                        GetIotToken.refreshToken();
-                        token = GetIotToken.getToken();
-                        if (token != null) {
-                            try {
-                                IotHttpSender.sendMessage(token, messageToSend);
-                                System.out.println("重试发送成功: " + messageToSend);
-                            } catch (Exception ex) {
-                                System.err.println("重试发送失败: " + ex.getMessage());
-                                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to send message after retry");
-                            }
-                        } else {
-                            System.err.println("刷新 Token 失败");
-                            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to refresh IoT Token");
-                        }
-                    }
-                } else {
-                    System.err.println("获取 Token 失败");
-                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to get IoT Token");
-                }
+            // 异步下发，立即返回跟踪 ID，不在请求线程上等 Token 和 IoTDA
+            IotDispatcher.Delivery delivery = iotDispatcher.dispatch(messageToSend);
+            if (delivery == null) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("device queue full");
             }
 
-            return ResponseEntity.ok("received: " + actionContent);
+            ObjectNode result = objectMapper.createObjectNode();
+            result.put("received", actionContent);
+            result.put("message", messageToSend);
+            result.put("trackingId", delivery.getId());
+            return ResponseEntity.accepted().contentType(MediaType.APPLICATION_JSON).body(result.toString());
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("error: " + e.getMessage());
         }
     }
+
+    /**
+     * GET /action/status/{trackingId}
+     * 查询一次下发的结果：PENDING / SENDING / SENT / FAILED
+     */
+    @GetMapping("/action/status/{trackingId}")
+    public ResponseEntity<String> actionStatus(@PathVariable String trackingId) {
+        IotDispatcher.Delivery delivery = iotDispatcher.getDelivery(trackingId);
+        if (delivery == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("unknown trackingId");
+        }
+        ObjectNode result = objectMapper.createObjectNode();
+        result.put("trackingId", delivery.getId());
+        result.put("deviceId", delivery.getDeviceId());
+        result.put("message", delivery.getMessage());
+        result.put("state", delivery.getState().name());
+        result.put("attempts", delivery.getAttempts());
+        if (delivery.getError() != null) result.put("error", delivery.getError());
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(result.toString());
+    }
 }
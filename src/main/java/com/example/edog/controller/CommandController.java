@@ -2,7 +2,6 @@ package com.example.edog.controller;
 
 import com.example.edog.entity.Command;
 import com.example.edog.service.CommandService;
-import com.example.edog.utils.OrderWebSocketHandler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -51,9 +50,6 @@ public class CommandController {
         Map<String, Object> res = new HashMap<>();
         int result = commandService.addOrUpdateCommand(command);
         if (result > 0) {
-            // ✅ 同步刷新 WebSocketHandler 的命令缓存
-            OrderWebSocketHandler.refreshCommandList(String.valueOf(command.getAccount()));
-
             res.put("success", true);
             res.put("msg", "命令保存成功");
         } else {
@@ -73,9 +69,6 @@ public class CommandController {
                 String.valueOf(command.getAccount()), command.getContent(), command.getMessage());
 
         if (result > 0) {
-            // ✅ 刷新 WebSocket 缓存
-            OrderWebSocketHandler.refreshCommandList(String.valueOf(command.getAccount()));
-
             res.put("success", true);
             res.put("msg", "更新成功");
         } else {
@@ -97,9 +90,6 @@ public class CommandController {
         int result = commandService.deleteByAccountAndContent(account, content);
 
         if (result > 0) {
-            // ✅ 刷新 WebSocket 缓存
-            OrderWebSocketHandler.refreshCommandList(account);
-
             res.put("success", true);
             res.put("msg", "删除成功");
         } else {
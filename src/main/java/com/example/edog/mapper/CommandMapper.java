@@ -7,8 +7,7 @@ import java.util.List;
 @Mapper
 public interface CommandMapper {
     List<Command> getAllCommandByAccount(String account);
-    Command findByAccountAndContent(String account, String content);
-    int insertCommand(Command command);
+    int upsertCommand(Command command);
     int updateMessageByAccountAndContent(String account, String content, String message);
     int deleteByAccountAndContent(String account, String content);
 }
\ No newline at end of file
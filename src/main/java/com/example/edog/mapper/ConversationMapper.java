@@ -14,6 +14,9 @@ public interface ConversationMapper {
     // 插入新对话
     int insertConversation(Conversation conversation);
 
+    // 批量插入对话（一条多行 INSERT），create_time 取入队时间
+    int insertConversations(@Param("list") List<Conversation> conversations);
+
     // 删除指定账号下的某条对话
     int deleteByAccountAndAnswer(@Param("account") Long account, @Param("reply") String reply);
 }
\ No newline at end of file
@@ -1,17 +1,17 @@
 package com.example.edog.service;
 
-import com.alibaba.nls.client.protocol.InputFormatEnum;
-import com.alibaba.nls.client.protocol.NlsClient;
-import com.alibaba.nls.client.protocol.SampleRateEnum;
-import com.alibaba.nls.client.protocol.asr.SpeechTranscriber;
 import com.alibaba.nls.client.protocol.asr.SpeechTranscriberListener;
 import com.alibaba.nls.client.protocol.asr.SpeechTranscriberResponse;
-import com.example.edog.utils.AliyunCredentials;
-import io.github.jaredmdobson.concentus.OpusDecoder;
+import com.example.edog.configurer.EdogProperties;
+import com.example.edog.utils.OpusPcmDecoder;
+import com.example.edog.utils.VoiceActivityDetector;
 import io.github.jaredmdobson.concentus.OpusException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 /**
@@ -20,25 +20,66 @@ import java.util.function.Consumer;
 public class AliyunRealtimeASR {
     private static final Logger log = LoggerFactory.getLogger(AliyunRealtimeASR.class);
 
-    // 静态单例 Client
-    private static NlsClient nlsClient;
-    // 记录当前 Client 使用的 Token，用于对比是否需要刷新
-    private static String currentClientToken = "";
-    // 锁对象
-    private static final Object clientLock = new Object();
+    private static final int SAMPLE_RATE = 16000;
+    // 16k 单声道 16-bit：每毫秒 32 字节
+    private static final int BYTES_PER_MS = SAMPLE_RATE * 2 / 1000;
+    // 预缓存上限；缓存的是拷贝，解码器输出数组下一帧就会被覆盖，不能直接留着
+    private static final int MAX_PRE_ROLL_MS = 600;
+    // 静音期保活数据：20ms 全零 PCM，只读共享
+    private static final byte[] KEEPALIVE_PCM = new byte[20 * BYTES_PER_MS];
 
-    private SpeechTranscriber transcriber;
-    private OpusDecoder opusDecoder;
+    // 所有会话累计的音频时长，经 MetricsConfig 导出，用来看 VAD 实际省下多少识别时长
+    private static final AtomicLong forwardedMs = new AtomicLong();
+    private static final AtomicLong suppressedMs = new AtomicLong();
+
+    private TranscriberPool pool;
+    private volatile TranscriberPool.Lease lease;
+    private OpusPcmDecoder opusDecoder;
     private Consumer<String> textCallback;
     private volatile boolean isRunning = false;
-    private final short[] pcmBuffer = new short[5760];
+
+    // VAD 门控，为 null 时不做过滤
+    private final VoiceActivityDetector vad;
+    private final int preRollMs;
+    private final long keepaliveMs;
+    // 打断判定所需的持续说话时长，0 表示不支持打断
+    private final int bargeInMs;
+    private final ArrayDeque<byte[]> preRoll = new ArrayDeque<>();
+    private int preRollBuffered = 0;
+    // 挤出预缓存、没有送出过的拷贝，下一帧复用
+    private byte[] preRollSpare;
+    private long lastSendAt = 0;
+    // 播放期间当前这段说话已持续的时长
+    private int bargeInSpeechMs = 0;
+    // 识别服务回调的句子开始时刻（nanoTime）和最近一句从开始到断句的耗时
+    private volatile long sentenceBeganAt = 0;
+    private volatile long lastSentenceNanos = -1;
 
     public AliyunRealtimeASR() {
+        this(null);
+    }
+
+    /**
+     * @param vadConfig VAD 参数，为 null 或未启用时所有音频原样送识别
+     */
+    public AliyunRealtimeASR(EdogProperties.Vad vadConfig) {
         try {
-            this.opusDecoder = new OpusDecoder(16000, 1);
+            this.opusDecoder = new OpusPcmDecoder(SAMPLE_RATE);
         } catch (OpusException e) {
             log.error("Opus解码器初始化失败", e);
         }
+        if (vadConfig != null && vadConfig.isEnabled()) {
+            this.vad = new VoiceActivityDetector(SAMPLE_RATE, vadConfig.getStartMs(), vadConfig.getHangoverMs(),
+                    vadConfig.getEnergyMarginDb(), vadConfig.getMinEnergyDb());
+            this.preRollMs = Math.min(vadConfig.getPreRollMs(), MAX_PRE_ROLL_MS);
+            this.keepaliveMs = vadConfig.getKeepaliveMs();
+            this.bargeInMs = vadConfig.isBargeIn() ? Math.max(1, vadConfig.getBargeInMs()) : 0;
+        } else {
+            this.vad = null;
+            this.preRollMs = 0;
+            this.keepaliveMs = vadConfig != null ? vadConfig.getKeepaliveMs() : 3000;
+            this.bargeInMs = 0;
+        }
     }
 
     public void setOnResultCallback(Consumer<String> callback) {
@@ -46,86 +87,182 @@ public class AliyunRealtimeASR {
     }
 
     /**
-     * 启动识别
-     * @param token 最新的有效 Token
+     * 最近一句从识别服务判定句子开始到断句的耗时，在结果回调中读取即为当前这句；未知时为 -1
      */
-    public void start(String token) {
-        // 1. 检查并刷新 NlsClient
-        // 如果 Client 为空，或者 Token 变了（过期刷新了），则重新创建 Client
-        synchronized (clientLock) {
-            if (nlsClient == null || !token.equals(currentClientToken)) {
-                log.info("检测到 Token 变更或 Client 未初始化，正在重置 NlsClient...");
-                
-                // 如果有旧的，先关闭
-                if (nlsClient != null) {
-                    try {
-                        nlsClient.shutdown();
-                    } catch (Exception e) {
-                        log.warn("关闭旧 NlsClient 失败", e);
-                    }
-                }
+    public long getLastSentenceNanos() {
+        return lastSentenceNanos;
+    }
 
-                // 创建新的，绑定新 Token
-                try {
-                    nlsClient = new NlsClient(token);
-                    currentClientToken = token; // 更新记录
-                    log.info("NlsClient 初始化/刷新成功");
-                } catch (Exception e) {
-                    log.error("NlsClient 创建失败", e);
-                    return;
-                }
-            }
+    /**
+     * 启动识别：从会话池领用一路已握手的识别会话
+     */
+    public void start(TranscriberPool pool) {
+        this.pool = pool;
+        lease = pool.acquire(getListener());
+        isRunning = lease != null;
+        if (isRunning) {
+            log.info("ASR 会话启动成功");
+        } else {
+            log.error("ASR 启动异常：未能领用识别会话");
         }
+    }
+
+    public boolean isRunning() {
+        return isRunning;
+    }
 
+    public synchronized void sendOpusStream(byte[] opusBytes) {
+        if (!isRunning || lease == null) return;
         try {
-            // 2. 使用 NlsClient 创建 Transcriber
-            // 注意：SDK 2.2.19 的 SpeechTranscriber 会自动使用 nlsClient 里的 Token
-            transcriber = new SpeechTranscriber(nlsClient, getListener());
-            transcriber.setAppKey(AliyunCredentials.APP_KEY);
-
-            // ❌ 已删除报错代码: transcriber.setToken(token); 
-
-            // 3. 参数设置
-            transcriber.setFormat(InputFormatEnum.PCM);
-            transcriber.setSampleRate(SampleRateEnum.SAMPLE_RATE_16K);
-            transcriber.setEnablePunctuation(true);
-            transcriber.addCustomedParam("enable_inverse_text_normalization", true);
-            transcriber.setEnableIntermediateResult(false);
-
-            transcriber.start();
-            isRunning = true;
-            log.info("ASR 会话启动成功");
+            gate(opusDecoder.decode(opusBytes, 0, opusBytes.length));
+        } catch (Exception e) {
+            log.warn("音频发送失败: {}", e.getMessage());
+        }
+    }
 
+    /**
+     * 直接从 WebSocket 负载解码并送识别，解码和 PCM 打包全程复用缓冲，不产生逐帧垃圾
+     * 心跳保活线程和 WebSocket 线程都会调用，解码器有状态，需串行
+     */
+    public synchronized void sendOpusStream(ByteBuffer opusPayload) {
+        if (!isRunning || lease == null) return;
+        try {
+            gate(opusDecoder.decode(opusPayload));
         } catch (Exception e) {
-            log.error("ASR 启动异常", e);
-            isRunning = false;
+            log.warn("音频发送失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 静音期保活：距上次送数据超过 keepaliveMs 时补一小段全零 PCM，避免识别服务空闲超时
+     */
+    public synchronized void keepAlive() {
+        if (!isRunning || lease == null) return;
+        if (System.currentTimeMillis() - lastSendAt >= keepaliveMs) {
+            sendPcm(KEEPALIVE_PCM);
         }
     }
 
-    public void sendOpusStream(byte[] opusBytes) {
-        if (!isRunning || transcriber == null) return;
+    /**
+     * 回复播放期间调用：只做语音检测，不送识别（期间按需保活）
+     * 说话态持续 bargeInMs 后返回 true，并把缓存的这段语音补发给识别服务，
+     * 调用方打断播放后改回 sendOpusStream，后续音频接着送识别，本句不会丢开头
+     * @return true 表示用户在打断
+     */
+    public synchronized boolean detectBargeIn(ByteBuffer opusPayload) {
+        if (!isRunning || lease == null) return false;
+        if (bargeInMs <= 0) {
+            keepAlive();
+            return false;
+        }
         try {
-            int samples = opusDecoder.decode(opusBytes, 0, opusBytes.length, pcmBuffer, 0, pcmBuffer.length, false);
-            if (samples > 0) {
-                byte[] pcmData = new byte[samples * 2];
-                for (int i = 0; i < samples; i++) {
-                    short s = pcmBuffer[i];
-                    pcmData[i * 2] = (byte) (s & 0xff);
-                    pcmData[i * 2 + 1] = (byte) ((s >> 8) & 0xff);
-                }
-                transcriber.send(pcmData);
+            byte[] pcmData = opusDecoder.decode(opusPayload);
+            if (pcmData == null) return false;
+            int frameMs = pcmData.length / BYTES_PER_MS;
+            boolean speaking = vad.process(opusDecoder.lastPcm(), opusDecoder.lastSampleCount());
+            bargeInSpeechMs = speaking ? bargeInSpeechMs + frameMs : 0;
+
+            // 判定期间的语音全部留着，缓存上限放宽到 MAX_PRE_ROLL_MS
+            suppressedMs.addAndGet(frameMs);
+            bufferPreRoll(pcmData, MAX_PRE_ROLL_MS);
+
+            if (bargeInSpeechMs >= bargeInMs) {
+                bargeInSpeechMs = 0;
+                flushPreRoll();
+                return true;
             }
         } catch (Exception e) {
-            log.warn("音频发送失败: {}", e.getMessage());
+            log.warn("打断检测失败: {}", e.getMessage());
+        }
+        keepAlive();
+        return false;
+    }
+
+    /**
+     * 所有会话已送识别的音频时长（毫秒）
+     */
+    public static long getForwardedMs() {
+        return forwardedMs.get();
+    }
+
+    /**
+     * 所有会话被 VAD 拦下未送识别的音频时长（毫秒）
+     */
+    public static long getSuppressedMs() {
+        return suppressedMs.get();
+    }
+
+    /**
+     * VAD 门控：只转发说话段（含 hangover），说话开始时先补发预缓存的句首
+     */
+    private void gate(byte[] pcmData) {
+        if (pcmData == null) return;
+        bargeInSpeechMs = 0;
+        int frameMs = pcmData.length / BYTES_PER_MS;
+        if (vad == null) {
+            sendPcm(pcmData);
+            forwardedMs.addAndGet(frameMs);
+            return;
+        }
+
+        boolean wasSpeaking = vad.isSpeaking();
+        boolean speaking = vad.process(opusDecoder.lastPcm(), opusDecoder.lastSampleCount());
+        if (speaking) {
+            if (!wasSpeaking) flushPreRoll();
+            sendPcm(pcmData);
+            forwardedMs.addAndGet(frameMs);
+            return;
+        }
+
+        suppressedMs.addAndGet(frameMs);
+        if (preRollMs > 0) bufferPreRoll(pcmData, preRollMs);
+    }
+
+    /**
+     * 拷贝一帧进预缓存并按时长上限挤掉最早的帧
+     * 解码输出数组在下一帧复用，只能存拷贝
+     */
+    private void bufferPreRoll(byte[] pcmData, int limitMs) {
+        byte[] copy = preRollSpare != null && preRollSpare.length == pcmData.length
+                ? preRollSpare : new byte[pcmData.length];
+        preRollSpare = null;
+        System.arraycopy(pcmData, 0, copy, 0, pcmData.length);
+        preRoll.addLast(copy);
+        preRollBuffered += pcmData.length / BYTES_PER_MS;
+        while (preRollBuffered > limitMs && !preRoll.isEmpty()) {
+            byte[] evicted = preRoll.removeFirst();
+            preRollBuffered -= evicted.length / BYTES_PER_MS;
+            preRollSpare = evicted;
+        }
+    }
+
+    private void flushPreRoll() {
+        byte[] frame;
+        while ((frame = preRoll.pollFirst()) != null) {
+            int frameMs = frame.length / BYTES_PER_MS;
+            sendPcm(frame);
+            forwardedMs.addAndGet(frameMs);
+            suppressedMs.addAndGet(-frameMs);
         }
+        preRollBuffered = 0;
+    }
+
+    private void sendPcm(byte[] pcmData) {
+        lease.send(pcmData);
+        lastSendAt = System.currentTimeMillis();
     }
 
     public void stop() {
         isRunning = false;
-        if (transcriber != null) {
-            try { transcriber.stop(); } catch (Exception e) {}
-            finally { transcriber.close(); transcriber = null; }
+        TranscriberPool.Lease current;
+        synchronized (this) {
+            preRoll.clear();
+            preRollBuffered = 0;
+            current = lease;
+            lease = null;
         }
+        // 归还给会话池，stop/close 在后台完成
+        if (current != null && pool != null) pool.release(current);
         log.info("ASR 会话已停止");
     }
 
@@ -142,13 +279,18 @@ public class AliyunRealtimeASR {
             @Override
             public void onSentenceEnd(SpeechTranscriberResponse response) {
                 String text = response.getTransSentenceText();
+                long began = sentenceBeganAt;
+                lastSentenceNanos = began == 0 ? -1 : System.nanoTime() - began;
+                sentenceBeganAt = 0;
                 log.info("识别结果: {}", text);
                 if (textCallback != null && text != null && !text.isEmpty()) {
                     textCallback.accept(text);
                 }
             }
             @Override
-            public void onSentenceBegin(SpeechTranscriberResponse response) {}
+            public void onSentenceBegin(SpeechTranscriberResponse response) {
+                sentenceBeganAt = System.nanoTime();
+            }
             @Override
             public void onTranscriptionResultChange(SpeechTranscriberResponse response) {}
             @Override
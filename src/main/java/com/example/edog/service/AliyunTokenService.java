@@ -1,6 +1,7 @@
 package com.example.edog.service;
 
 import com.alibaba.nls.client.AccessToken;
+import com.example.edog.configurer.EdogProperties;
 import com.example.edog.utils.AliyunCredentials;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,12 +20,20 @@ public class AliyunTokenService {
 
     private String token;
     private long expireTime = 0; // 过期时间戳（秒）
+    // 配置了固定 Token 时不再申请（本地假服务、临时 Token）
+    private final String fixedToken;
+
+    public AliyunTokenService(EdogProperties properties) {
+        String configured = properties.getAsr().getToken();
+        this.fixedToken = configured == null || configured.isEmpty() ? null : configured;
+    }
 
     /**
      * 获取有效的 Token
      * 如果缓存为空或即将过期（提前10分钟），则重新申请
      */
     public synchronized String getToken() {
+        if (fixedToken != null) return fixedToken;
         long now = System.currentTimeMillis() / 1000;
         
         // 如果没有 Token 或者 Token 还有 10 分钟就过期了，就刷新
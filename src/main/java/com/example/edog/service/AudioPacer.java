@@ -0,0 +1,218 @@
+package com.example.edog.service;
+
+import com.example.edog.configurer.EdogProperties;
+import com.example.edog.utils.AudioConverter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 音频节拍发送器
+ * 所有会话共用一个小的定时线程池，按单调时钟（System.nanoTime）推算设备端播放进度来下发 Opus 帧，
+ * 取代每路回复一个线程 + Thread.sleep(50) 的做法
+ *
+ * 节拍规则：记录设备缓冲预计播空的时刻 deviceFreeAt，只要缓冲余量小于预填充量就继续发帧，
+ * 因此开播时会先突发 prefillFrames 帧，之后按 60ms 一帧匀速补充；发送晚了（下游供帧不及时）会自动以当前时刻重新对齐
+ */
+@Service
+public class AudioPacer {
+
+    private static final Logger log = LoggerFactory.getLogger(AudioPacer.class);
+
+    private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(AudioConverter.FRAME_DURATION_MS);
+
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final long leadNanos;
+    private final AtomicInteger activeStreams = new AtomicInteger();
+
+    public AudioPacer(EdogProperties properties) {
+        EdogProperties.Audio audio = properties.getAudio();
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.scheduler = new ScheduledThreadPoolExecutor(Math.max(1, audio.getPacerThreads()), r -> {
+            Thread t = new Thread(r, "audio-pacer-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        this.leadNanos = Math.max(1, audio.getPrefillFrames()) * FRAME_NANOS;
+    }
+
+    /**
+     * 为一次回复打开一路节拍发送流
+     * @param session 需是线程安全的会话（ConcurrentWebSocketSessionDecorator）
+     */
+    public PacedStream open(WebSocketSession session) {
+        activeStreams.incrementAndGet();
+        return new PacedStream(session);
+    }
+
+    /**
+     * 在节拍线程池上延迟执行一个轻量任务（如会话解锁）
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delayMs) {
+        return scheduler.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    public int getActiveStreams() {
+        return activeStreams.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 一路回复音频
+     * offer 可以在任意线程调用，帧的实际发送始终在节拍线程上完成，同一时刻每路流最多只有一个发送任务在跑
+     */
+    public class PacedStream {
+        private final WebSocketSession session;
+        private final ConcurrentLinkedQueue<byte[]> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        private final CompletableFuture<Void> firstSent = new CompletableFuture<>();
+        private final CompletableFuture<Integer> sent = new CompletableFuture<>();
+        private final CompletableFuture<Integer> playbackEnd = new CompletableFuture<>();
+
+        private volatile boolean finished = false;
+        private volatile boolean cancelled = false;
+
+        // 以下字段只在持有 scheduled 标志的节拍线程上读写
+        private long deviceFreeAt = 0;
+        private int framesSent = 0;
+
+        private PacedStream(WebSocketSession session) {
+            this.session = session;
+        }
+
+        public void offer(byte[] frame) {
+            if (cancelled || finished) return;
+            queue.add(frame);
+            kick();
+        }
+
+        public void offerAll(List<byte[]> frames) {
+            if (cancelled || finished) return;
+            queue.addAll(frames);
+            kick();
+        }
+
+        /**
+         * 标记不会再有新帧，剩余帧发完后 whenSent 完成，设备播完后 whenPlaybackEnds 完成
+         */
+        public void finish() {
+            finished = true;
+            kick();
+        }
+
+        /**
+         * 立即停止发送，丢弃未发送的帧
+         */
+        public void cancel() {
+            if (cancelled) return;
+            cancelled = true;
+            queue.clear();
+            complete(0);
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * 第一帧写出到 WebSocket 时完成，一帧都没发出就被取消则不会完成
+         */
+        public CompletableFuture<Void> whenFirstSent() {
+            return firstSent;
+        }
+
+        /**
+         * 最后一帧写出到 WebSocket 时完成，值为已发送帧数
+         */
+        public CompletableFuture<Integer> whenSent() {
+            return sent;
+        }
+
+        /**
+         * 在设备预计播完最后一帧的时刻完成，值为已发送帧数
+         */
+        public CompletableFuture<Integer> whenPlaybackEnds() {
+            return playbackEnd;
+        }
+
+        private void kick() {
+            if (scheduled.compareAndSet(false, true)) {
+                scheduler.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            long now = System.nanoTime();
+            // 设备缓冲已播空（首帧或供帧不及时），以当前时刻重新对齐帧时钟
+            if (deviceFreeAt - now < 0) deviceFreeAt = now;
+
+            byte[] frame;
+            while (!cancelled && deviceFreeAt - now < leadNanos && (frame = queue.poll()) != null) {
+                if (!send(frame)) {
+                    cancel();
+                    break;
+                }
+                deviceFreeAt += FRAME_NANOS;
+                if (framesSent++ == 0) firstSent.complete(null);
+            }
+
+            if (cancelled) {
+                scheduled.set(false);
+                return;
+            }
+
+            if (!queue.isEmpty()) {
+                // 设备缓冲已满，等余量降到预填充线以下再发
+                scheduler.schedule(this::drain, deviceFreeAt - leadNanos - now, TimeUnit.NANOSECONDS);
+                return;
+            }
+
+            scheduled.set(false);
+            // 放弃标志后再检查一次，防止与 offer/finish 竞争时漏掉新帧
+            if (!queue.isEmpty()) {
+                kick();
+                return;
+            }
+            if (finished && !sent.isDone()) {
+                sent.complete(framesSent);
+                long remaining = Math.max(0, deviceFreeAt - System.nanoTime());
+                scheduler.schedule(() -> complete(framesSent), remaining, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private boolean send(byte[] frame) {
+            if (!session.isOpen()) return false;
+            try {
+                session.sendMessage(new BinaryMessage(frame));
+                return true;
+            } catch (Exception e) {
+                log.warn("音频帧发送失败: {}", e.getMessage());
+                return false;
+            }
+        }
+
+        private void complete(int frames) {
+            sent.complete(frames);
+            if (playbackEnd.complete(frames)) {
+                activeStreams.decrementAndGet();
+            }
+        }
+    }
+}
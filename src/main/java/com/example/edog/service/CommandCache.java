@@ -0,0 +1,126 @@
+package com.example.edog.service;
+
+import com.example.edog.entity.Command;
+import com.example.edog.mapper.CommandMapper;
+import com.example.edog.utils.CommandIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按账号缓存的命令列表
+ * 每个账号对应一个不可变快照（命令列表 + 拼音索引），增删改时基于旧快照复制出新快照再原子替换，
+ * 读方拿到的永远是完整的一版，不会看到清空到一半的列表，也不会阻塞在数据库上
+ *
+ * 只缓存有设备在线的账号：设备绑定时加载，账号设备全部离线时释放；
+ * 未缓存账号上的写操作直接忽略，下次加载时自然读到最新数据
+ */
+@Service
+public class CommandCache {
+
+    private static final Logger log = LoggerFactory.getLogger(CommandCache.class);
+
+    @Autowired
+    private CommandMapper commandMapper;
+
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * 确保账号已加载（已缓存则直接返回，不访问数据库）
+     */
+    public Snapshot load(String account) {
+        return snapshots.computeIfAbsent(account, k -> {
+            Map<String, String> commands = new LinkedHashMap<>();
+            for (Command cmd : commandMapper.getAllCommandByAccount(k)) {
+                commands.put(cmd.getContent(), cmd.getMessage());
+            }
+            log.info("已加载账号 {} 的命令: {} 条", k, commands.size());
+            return new Snapshot(commands);
+        });
+    }
+
+    /**
+     * 当前快照，未缓存返回 null，不会访问数据库
+     */
+    public Snapshot peek(String account) {
+        return account == null ? null : snapshots.get(account);
+    }
+
+    /**
+     * 账号命令的拼音索引，未缓存时返回空索引
+     */
+    public CommandIndex getIndex(String account) {
+        Snapshot snapshot = peek(account);
+        return snapshot == null ? CommandIndex.EMPTY : snapshot.getIndex();
+    }
+
+    /**
+     * 新增或更新一条命令（写库成功后调用）
+     */
+    public void put(String account, String content, String message) {
+        snapshots.computeIfPresent(account, (k, old) -> {
+            Map<String, String> commands = new LinkedHashMap<>(old.commands);
+            commands.put(content, message);
+            return new Snapshot(commands);
+        });
+    }
+
+    /**
+     * 删除一条命令（写库成功后调用）
+     */
+    public void remove(String account, String content) {
+        snapshots.computeIfPresent(account, (k, old) -> {
+            if (!old.commands.containsKey(content)) return old;
+            Map<String, String> commands = new LinkedHashMap<>(old.commands);
+            commands.remove(content);
+            return new Snapshot(commands);
+        });
+    }
+
+    /**
+     * 账号设备全部离线后释放
+     */
+    public void evict(String account) {
+        if (account != null) snapshots.remove(account);
+    }
+
+    /**
+     * 一个账号的命令快照（不可变）
+     */
+    public static final class Snapshot {
+        private final Map<String, String> commands;
+        private final List<String[]> pairs;
+        private final CommandIndex index;
+
+        private Snapshot(Map<String, String> commands) {
+            this.commands = Collections.unmodifiableMap(commands);
+            List<String[]> list = new ArrayList<>(commands.size());
+            commands.forEach((content, message) -> list.add(new String[]{content, message}));
+            this.pairs = Collections.unmodifiableList(list);
+            this.index = new CommandIndex(pairs);
+        }
+
+        /**
+         * content-message 二维数组，数组本身不要修改
+         */
+        public List<String[]> getCommandList() {
+            return pairs;
+        }
+
+        public CommandIndex getIndex() {
+            return index;
+        }
+
+        public int size() {
+            return pairs.size();
+        }
+    }
+}
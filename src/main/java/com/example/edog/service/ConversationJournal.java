@@ -0,0 +1,183 @@
+package com.example.edog.service;
+
+import com.example.edog.configurer.EdogProperties;
+import com.example.edog.entity.Conversation;
+import com.example.edog.mapper.ConversationMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 对话记录异步落库
+ * 语音链路每轮结束后把（账号, 问题, 回复）放进有界内存队列即返回，后台写线程攒够 batchSize 条
+ * 或最早一条等满 flushIntervalMs 后用一条多行 INSERT 写入，对话本身不再等远程数据库
+ *
+ * 队列满时入队最多等待 offerTimeoutMs，仍然满就丢弃并计数；写库失败按批重试，最终失败的整批丢弃并计数。
+ * 关闭时停止接收新记录，等写线程把队列写完（最多 shutdownTimeoutMs）
+ */
+@Service
+public class ConversationJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationJournal.class);
+
+    private static final long RETRY_BACKOFF_MS = 500;
+
+    private final ConversationMapper mapper;
+    private final EdogProperties.Journal config;
+    private final BlockingQueue<Conversation> queue;
+    private final Thread writer;
+
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    public ConversationJournal(ConversationMapper mapper, EdogProperties properties) {
+        this.mapper = mapper;
+        this.config = properties.getJournal();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity()));
+        this.writer = new Thread(this::writeLoop, "conversation-journal");
+        this.writer.setDaemon(true);
+        if (config.isEnabled()) {
+            writer.start();
+            log.info("对话记录异步落库已启动: 队列上限={}, 批大小={}, 刷新间隔={}ms",
+                    config.getQueueCapacity(), config.getBatchSize(), config.getFlushIntervalMs());
+        }
+    }
+
+    /**
+     * 记录一轮对话，不阻塞调用方（队列满时最多等待 offerTimeoutMs）
+     * @param account 账号，非数字或为空时不记录
+     * @param answer 用户的问题
+     * @param reply 智能体的回复
+     * @return false 表示未记录（未启用、参数无效或队列已满被丢弃）
+     */
+    public boolean append(String account, String answer, String reply) {
+        if (!config.isEnabled() || !running) return false;
+        if (account == null || answer == null || answer.isEmpty() || reply == null || reply.isEmpty()) return false;
+
+        Conversation conversation = new Conversation();
+        try {
+            conversation.setAccount(Long.parseLong(account));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        conversation.setAnswer(answer);
+        conversation.setReply(reply);
+        // 写库可能晚几秒，时间取入队时刻
+        conversation.setCreateTime(new Date());
+
+        try {
+            if (queue.offer(conversation, config.getOfferTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                appended.incrementAndGet();
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long n = dropped.incrementAndGet();
+        // 持续写不进去时不刷屏
+        if (n == 1 || n % 100 == 0) {
+            log.warn("对话记录队列已满，已丢弃 {} 条", n);
+        }
+        return false;
+    }
+
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    public long getAppendedCount() {
+        return appended.get();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!config.isEnabled()) return;
+        running = false;
+        try {
+            writer.join(config.getShutdownTimeoutMs());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            log.warn("对话记录未能在 {} ms 内写完，剩余 {} 条未落库", config.getShutdownTimeoutMs(), queue.size());
+            writer.interrupt();
+        } else {
+            log.info("对话记录已全部落库: 共写入 {} 条, 丢弃 {} 条, 失败 {} 条", written.get(), dropped.get(), failed.get());
+        }
+    }
+
+    private void writeLoop() {
+        int batchSize = Math.max(1, config.getBatchSize());
+        List<Conversation> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Conversation first = queue.poll(config.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                // 攒批：凑够 batchSize 或最早一条已等满 flushIntervalMs；关闭阶段不再等待
+                long deadline = System.currentTimeMillis() + config.getFlushIntervalMs();
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long wait = deadline - System.currentTimeMillis();
+                    if (batch.size() >= batchSize || wait <= 0 || !running) break;
+                    Conversation next = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                // 关闭超时后被中断，放弃剩余记录
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Conversation> batch) throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                long begin = System.currentTimeMillis();
+                mapper.insertConversations(batch);
+                written.addAndGet(batch.size());
+                log.debug("对话记录写入 {} 条，耗时 {} ms", batch.size(), System.currentTimeMillis() - begin);
+                return;
+            } catch (Exception e) {
+                if (attempt >= config.getMaxRetries()) {
+                    failed.addAndGet(batch.size());
+                    log.error("对话记录写入失败，丢弃本批 {} 条", batch.size(), e);
+                    return;
+                }
+                log.warn("对话记录写入失败，第 {} 次重试: {}", attempt + 1, e.getMessage());
+                Thread.sleep(RETRY_BACKOFF_MS * (attempt + 1));
+            }
+        }
+    }
+}
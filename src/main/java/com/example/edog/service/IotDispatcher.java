@@ -0,0 +1,384 @@
+package com.example.edog.service;
+
+import com.example.edog.configurer.EdogProperties;
+import com.example.edog.utils.GetIotToken;
+import com.example.edog.utils.IotHttpSender;
+import com.example.edog.utils.MotionCommandQueue;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * IoTDA 消息异步下发
+ * 调用方提交后立即拿到跟踪 ID 返回，不再在请求线程上等 IAM 登录和 IoTDA 往返；
+ * 每个设备一条队列，同一设备的消息按提交顺序逐条发送，不同设备之间并行
+ *
+ * 发送失败按指数退避加随机抖动重试，鉴权失败时通知后台线程刷新 Token 后再试；
+ * IAM Token 由后台线程在过期前主动刷新，发送线程读 Token 不加锁
+ *
+ * 设备队列对运动指令做合并（见 MotionCommandQueue）：未发送的旧运动指令被新的取代，停止指令插队；
+ * 同一设备的下发不超过 edog.motion.max-rate-per-second，停止指令不受限速
+ */
+@Service
+public class IotDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(IotDispatcher.class);
+
+    private final EdogProperties.Iot config;
+    private final EdogProperties.Motion motion;
+    private final Map<String, DeviceLane> lanes = new ConcurrentHashMap<>();
+    private final Cache<String, Delivery> tracking;
+
+    private final ScheduledExecutorService senders;
+    // IAM 登录是秒级的阻塞调用，单独一个线程，不占发送线程
+    private final ScheduledExecutorService tokenRefresher;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    // 被更新的运动指令取代 / 被停止指令清掉的下发
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public IotDispatcher(EdogProperties properties) {
+        this.config = properties.getIot();
+        this.motion = properties.getMotion();
+        this.tracking = Caffeine.newBuilder()
+                .expireAfterWrite(config.getTrackingTtlMs(), TimeUnit.MILLISECONDS)
+                .build();
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.senders = Executors.newScheduledThreadPool(Math.max(1, config.getSenderThreads()), r -> {
+            Thread t = new Thread(r, "iot-sender-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.tokenRefresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "iot-token");
+            t.setDaemon(true);
+            return t;
+        });
+        // 启动时即获取 Token，之后定期检查，过期前主动刷新
+        tokenRefresher.scheduleWithFixedDelay(this::refreshIfExpiring, 0,
+                Math.max(1000, config.getTokenCheckIntervalMs()), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 提交一条下发到默认设备
+     */
+    public Delivery dispatch(String message) {
+        return dispatch(IotHttpSender.DEVICE_ID, message);
+    }
+
+    /**
+     * 提交一条下发，立即返回
+     * @return 下发记录（含跟踪 ID），设备排队已满时返回 null
+     */
+    public Delivery dispatch(String deviceId, String message) {
+        DeviceLane lane = lanes.computeIfAbsent(deviceId, this::newLane);
+        Delivery delivery = new Delivery(UUID.randomUUID().toString().replace("-", ""), deviceId, message);
+        List<Delivery> superseded = new ArrayList<>(1);
+        synchronized (lane) {
+            if (!lane.queue.offer(delivery, superseded)) {
+                rejected.incrementAndGet();
+                log.warn("设备 {} 排队已满（{} 条），拒绝下发: {}", deviceId, lane.queue.size(), message);
+                return null;
+            }
+            boolean stop = lane.queue.kindOf(delivery) == MotionCommandQueue.Kind.STOP;
+            for (Delivery old : superseded) {
+                supersede(old, delivery, stop);
+            }
+            tracking.put(delivery.id, delivery);
+            if (!lane.running) {
+                lane.running = true;
+                schedule(lane, 0);
+            } else if (stop && lane.waiting) {
+                // 停止指令不等限速或重试退避，作废已排的 drain 立即发送
+                schedule(lane, 0);
+            }
+        }
+        return delivery;
+    }
+
+    /**
+     * 查询下发结果，超过 trackingTtlMs 的记录已清理，返回 null
+     */
+    public Delivery getDelivery(String trackingId) {
+        return trackingId == null ? null : tracking.getIfPresent(trackingId);
+    }
+
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getRetriedCount() {
+        return retried.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public int getQueuedCount() {
+        int count = 0;
+        for (DeviceLane lane : lanes.values()) {
+            synchronized (lane) {
+                count += lane.queue.size();
+            }
+        }
+        return count;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        tokenRefresher.shutdownNow();
+        senders.shutdown();
+        try {
+            senders.awaitTermination(3, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        senders.shutdownNow();
+    }
+
+    /**
+     * 发送设备当前这条消息：成功或放弃后取下一条，失败则退避后重试同一条；
+     * 等待限速或重试期间如果来了更新的运动指令或停止指令，当前这条直接作废
+     * 同一设备同一时刻只有一个 drain 在跑
+     */
+    private void drain(DeviceLane lane, int epoch) {
+        Delivery delivery;
+        synchronized (lane) {
+            // 已被停止指令触发的新一轮 drain 取代
+            if (epoch != lane.epoch) return;
+            lane.waiting = false;
+            if (lane.current != null && lane.queue.supersedes(lane.current)) {
+                Delivery stale = lane.current;
+                lane.current = null;
+                Delivery by = lane.queue.peek();
+                supersede(stale, by, by != null && lane.queue.kindOf(by) == MotionCommandQueue.Kind.STOP);
+            }
+            if (lane.current == null) {
+                lane.current = lane.queue.poll();
+            }
+            delivery = lane.current;
+            if (delivery == null) {
+                lane.running = false;
+                return;
+            }
+            // 限速：停止指令和重试不受限
+            long wait = lane.lastSentAt + motion.minIntervalMs() - System.currentTimeMillis();
+            if (wait > 0 && delivery.attempts == 0 && lane.queue.kindOf(delivery) != MotionCommandQueue.Kind.STOP) {
+                schedule(lane, wait);
+                return;
+            }
+        }
+
+        boolean done = attempt(delivery);
+        synchronized (lane) {
+            if (done) {
+                lane.current = null;
+                lane.lastSentAt = System.currentTimeMillis();
+                schedule(lane, 0);
+            } else {
+                retried.incrementAndGet();
+                schedule(lane, backoff(delivery.attempts));
+            }
+        }
+    }
+
+    /**
+     * @return true 表示这条消息已结束（成功或放弃），false 表示需要重试
+     */
+    private boolean attempt(Delivery delivery) {
+        delivery.attempts++;
+        delivery.state = State.SENDING;
+        String token = GetIotToken.getToken();
+        try {
+            if (token == null) {
+                throw new IllegalStateException("IoT Token 不可用");
+            }
+            IotHttpSender.sendMessage(token, delivery.deviceId, delivery.message);
+            delivery.complete(State.SENT, null);
+            sent.incrementAndGet();
+            log.info("向设备 {} 发送: {}（第 {} 次尝试，排队 {} ms）", delivery.deviceId, delivery.message,
+                    delivery.attempts, delivery.completedAt - delivery.createdAt);
+            return true;
+        } catch (Exception e) {
+            if (e instanceof IotHttpSender.SendException && ((IotHttpSender.SendException) e).isAuthFailure()) {
+                // 交给后台刷新，多个发送同时失败只登录一次
+                tokenRefresher.execute(() -> GetIotToken.refreshIfCurrent(token));
+            }
+            if (delivery.attempts >= config.getMaxAttempts()) {
+                delivery.complete(State.FAILED, e.getMessage());
+                failed.incrementAndGet();
+                log.error("向设备 {} 发送失败，已放弃: {}（{}）", delivery.deviceId, delivery.message, e.getMessage());
+                return true;
+            }
+            delivery.state = State.PENDING;
+            delivery.error = e.getMessage();
+            log.warn("向设备 {} 发送失败，稍后重试（第 {} 次）: {}", delivery.deviceId, delivery.attempts, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 指数退避加抖动：base * 2^(n-1)，不超过 max，再乘以 [0.5, 1) 的随机系数，避免多设备同时重试
+     */
+    private long backoff(int attempts) {
+        long delay = config.getBaseBackoffMs() << Math.min(attempts - 1, 20);
+        delay = Math.min(delay, config.getMaxBackoffMs());
+        return (long) (delay * (0.5 + ThreadLocalRandom.current().nextDouble() * 0.5));
+    }
+
+    /**
+     * 未发送的旧指令被 by 取代
+     */
+    private void supersede(Delivery old, Delivery by, boolean byStop) {
+        old.complete(State.SUPERSEDED, by == null ? null : "superseded by " + by.message);
+        if (byStop) {
+            dropped.incrementAndGet();
+        } else {
+            coalesced.incrementAndGet();
+        }
+        log.debug("设备 {} 的指令 {} 已被 {} 取代", old.deviceId, old.message, by == null ? "-" : by.message);
+    }
+
+    /**
+     * 安排设备的下一轮 drain（需持有 lane 锁），之前排好但还没执行的 drain 随之作废
+     */
+    private void schedule(DeviceLane lane, long delayMs) {
+        if (senders.isShutdown()) return;
+        int epoch = ++lane.epoch;
+        lane.waiting = delayMs > 0;
+        if (delayMs <= 0) {
+            senders.execute(() -> drain(lane, epoch));
+        } else {
+            senders.schedule(() -> drain(lane, epoch), delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void refreshIfExpiring() {
+        long remaining = GetIotToken.getExpireAt() - System.currentTimeMillis();
+        if (remaining < config.getTokenRefreshAheadMs()) {
+            log.info("IoT Token 即将过期或不存在，后台刷新");
+            GetIotToken.refreshToken();
+        }
+    }
+
+    public enum State {
+        PENDING, SENDING, SENT, FAILED,
+        // 未发送就被更新的运动指令或停止指令取代
+        SUPERSEDED
+    }
+
+    /**
+     * 一条下发记录
+     */
+    public static final class Delivery {
+        private final String id;
+        private final String deviceId;
+        private final String message;
+        private final long createdAt = System.currentTimeMillis();
+        private volatile State state = State.PENDING;
+        private volatile int attempts = 0;
+        private volatile String error;
+        private volatile long completedAt = 0;
+
+        Delivery(String id, String deviceId, String message) {
+            this.id = id;
+            this.deviceId = deviceId;
+            this.message = message;
+        }
+
+        void complete(State state, String error) {
+            this.error = error;
+            this.completedAt = System.currentTimeMillis();
+            this.state = state;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getDeviceId() {
+            return deviceId;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        public long getCompletedAt() {
+            return completedAt;
+        }
+    }
+
+    private DeviceLane newLane(String deviceId) {
+        int capacity = Math.min(config.getMaxQueuePerDevice(), motion.getQueueCapacity());
+        return new DeviceLane(deviceId, new MotionCommandQueue<>(d -> d.message,
+                motion.getMotionCommands(), motion.getStopCommands(), capacity));
+    }
+
+    private static final class DeviceLane {
+        final String deviceId;
+        final MotionCommandQueue<Delivery> queue;
+        // 已出队、正在发送或等待重试 / 限速的那条
+        Delivery current;
+        long lastSentAt = 0;
+        boolean running = false;
+        // 正在等限速或重试退避（此时没有发送在进行）
+        boolean waiting = false;
+        // 每次安排 drain 加一，过期的 drain 直接返回
+        int epoch = 0;
+
+        DeviceLane(String deviceId, MotionCommandQueue<Delivery> queue) {
+            this.deviceId = deviceId;
+            this.queue = queue;
+        }
+    }
+}
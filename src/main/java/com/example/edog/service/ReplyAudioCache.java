@@ -0,0 +1,247 @@
+package com.example.edog.service;
+
+import com.example.edog.configurer.EdogProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 回复音频缓存
+ * 以（归一化回复文本, voiceId, 语速）为键缓存编码好的 Opus 帧列表，命中时跳过下载和转码直接开播；
+ * 问候语、确认语、"系统异常"之类的固定回复基本都能命中
+ *
+ * 底层用 Caffeine（W-TinyLFU 淘汰），按帧字节数计权重，写入后 ttlMs 过期；
+ * 配置了 persistDir 时条目会异步落盘，启动时加载未过期的文件，被淘汰的条目同时删除文件；
+ * 从磁盘加载的条目只活文件剩余的 TTL（按文件修改时间算），不会因为重启多活一轮
+ *
+ * 缓存的帧列表是只读共享的，调用方不能修改
+ */
+@Service
+public class ReplyAudioCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplyAudioCache.class);
+
+    private static final int FILE_MAGIC = 0x4F505553; // "OPUS"
+    private static final String FILE_SUFFIX = ".opus.bin";
+
+    private final EdogProperties.ReplyCache config;
+    private final Cache<String, Entry> cache;
+    private final File persistDir;
+    private final ExecutorService persistExecutor;
+
+    public ReplyAudioCache(EdogProperties properties) {
+        this.config = properties.getReplyCache();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(config.getMaxBytes())
+                .weigher((String key, Entry entry) -> weigh(key, entry.frames()))
+                .expireAfter(new EntryExpiry())
+                .removalListener((String key, Entry entry, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) deleteFile(key);
+                })
+                .recordStats()
+                .build();
+
+        String dir = config.getPersistDir();
+        if (config.isEnabled() && dir != null && !dir.isBlank()) {
+            this.persistDir = new File(dir);
+            if (!persistDir.exists() && !persistDir.mkdirs()) {
+                log.warn("回复音频缓存目录创建失败: {}", persistDir.getAbsolutePath());
+            }
+            this.persistExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "reply-cache-persist");
+                t.setDaemon(true);
+                return t;
+            });
+            persistExecutor.execute(this::loadFromDisk);
+        } else {
+            this.persistDir = null;
+            this.persistExecutor = null;
+        }
+    }
+
+    /**
+     * @return 缓存的 Opus 帧（只读），未命中返回 null
+     */
+    public List<byte[]> get(String text, String voiceId, Double speedRatio) {
+        if (!config.isEnabled()) return null;
+        String key = key(text, voiceId, speedRatio);
+        if (key == null) return null;
+        Entry entry = cache.getIfPresent(key);
+        return entry == null ? null : entry.frames();
+    }
+
+    /**
+     * 缓存一条回复的音频帧，文本过长（基本不会重复）的回复不缓存
+     */
+    public void put(String text, String voiceId, Double speedRatio, List<byte[]> frames) {
+        if (!config.isEnabled() || frames == null || frames.isEmpty()) return;
+        String key = key(text, voiceId, speedRatio);
+        if (key == null) return;
+        List<byte[]> snapshot = Collections.unmodifiableList(new ArrayList<>(frames));
+        cache.put(key, new Entry(snapshot, TimeUnit.MILLISECONDS.toNanos(config.getTtlMs())));
+        if (persistExecutor != null) {
+            persistExecutor.execute(() -> writeFile(key, snapshot));
+        }
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    public long getEntryCount() {
+        return cache.estimatedSize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (persistExecutor == null) return;
+        // 等待未完成的落盘任务
+        persistExecutor.shutdown();
+        try {
+            persistExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 生成缓存键：去掉空白、统一大小写，文本为空或超长时返回 null
+     */
+    String key(String text, String voiceId, Double speedRatio) {
+        if (text == null) return null;
+        String normalized = text.replaceAll("\\s+", "").toLowerCase();
+        if (normalized.isEmpty() || normalized.length() > config.getMaxTextLength()) return null;
+        return voiceId + "|" + (speedRatio == null ? 1.0 : speedRatio) + "|" + normalized;
+    }
+
+    private static int weigh(String key, List<byte[]> frames) {
+        long bytes = key.length() * 2L;
+        for (byte[] frame : frames) {
+            bytes += frame.length + 16; // 数组对象头
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    private void loadFromDisk() {
+        File[] files = persistDir.listFiles((d, name) -> name.endsWith(FILE_SUFFIX));
+        if (files == null) return;
+        long now = System.currentTimeMillis();
+        int loaded = 0;
+        for (File file : files) {
+            long remainingMs = config.getTtlMs() - (now - file.lastModified());
+            if (remainingMs <= 0) {
+                file.delete();
+                continue;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != FILE_MAGIC) continue;
+                String key = in.readUTF();
+                int count = in.readInt();
+                List<byte[]> frames = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    byte[] frame = new byte[in.readUnsignedShort()];
+                    in.readFully(frame);
+                    frames.add(frame);
+                }
+                // 不覆盖启动后已经写入的新条目
+                cache.asMap().putIfAbsent(key, new Entry(Collections.unmodifiableList(frames),
+                        TimeUnit.MILLISECONDS.toNanos(remainingMs)));
+                loaded++;
+            } catch (IOException e) {
+                log.warn("回复音频缓存文件损坏，已删除: {}", file.getName());
+                file.delete();
+            }
+        }
+        log.info("回复音频缓存从磁盘加载 {} 条", loaded);
+    }
+
+    private void writeFile(String key, List<byte[]> frames) {
+        File file = fileFor(key);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeUTF(key);
+            out.writeInt(frames.size());
+            for (byte[] frame : frames) {
+                out.writeShort(frame.length);
+                out.write(frame);
+            }
+        } catch (IOException e) {
+            log.warn("回复音频缓存落盘失败: {}", e.getMessage());
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) tmp.delete();
+        }
+    }
+
+    private void deleteFile(String key) {
+        if (persistExecutor == null || persistExecutor.isShutdown()) return;
+        persistExecutor.execute(() -> fileFor(key).delete());
+    }
+
+    private File fileFor(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return new File(persistDir, HexFormat.of().formatHex(digest) + FILE_SUFFIX);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 缓存值：帧列表 + 写入时剩余的存活时长
+     */
+    private record Entry(List<byte[]> frames, long ttlNanos) {
+    }
+
+    /**
+     * 写入（含覆盖）时按条目自带的存活时长计时，读取不续期
+     */
+    private static final class EntryExpiry implements Expiry<String, Entry> {
+        @Override
+        public long expireAfterCreate(String key, Entry entry, long currentTime) {
+            return entry.ttlNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+            return entry.ttlNanos();
+        }
+
+        @Override
+        public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.edog.service;
+
+import com.example.edog.configurer.EdogProperties;
+import com.example.edog.configurer.TTSClient;
+import com.example.edog.configurer.TTSConfig;
+import com.example.edog.utils.OpusStreamEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 逐句语音合成（百度流式 TTS）
+ * 一轮回复复用一条 TTSClient 连接：LLM 每凑齐一句就送一句，返回的 16k PCM 边收边编码成 24k Opus 帧交给节拍器，
+ * 第一句合成出来就能开播，不用等整段回复生成完再下载 Coze 的 MP3
+ *
+ * open/speak/finish 在回复线程上调用，PCM 回调在 TTSClient 的读线程上执行，编码器状态由 this 锁保护
+ */
+public class SentenceSynthesizer {
+
+    private static final Logger log = LoggerFactory.getLogger(SentenceSynthesizer.class);
+
+    // 百度流式 TTS 返回 16k 单声道 16-bit PCM
+    private static final int SAMPLE_RATE = 16000;
+
+    private final TtsConnectionManager connections;
+    private final TTSConfig ttsConfig;
+    private final EdogProperties.Tts config;
+    private final Supplier<AudioPacer.PacedStream> streamSupplier;
+    private final CompletableFuture<Integer> done = new CompletableFuture<>();
+
+    private volatile TTSClient client;
+    private OpusStreamEncoder encoder;
+    // 上一包 PCM 末尾落单的字节
+    private int carry = -1;
+    private int sentences = 0;
+    private long openedAt;
+
+    /**
+     * @param streamSupplier 首帧编码出来时才打开节拍流，没有音频的回复不占用节拍器
+     */
+    public SentenceSynthesizer(TtsConnectionManager connections, TTSConfig ttsConfig, EdogProperties.Tts config,
+                               Supplier<AudioPacer.PacedStream> streamSupplier) {
+        this.connections = connections;
+        this.ttsConfig = ttsConfig;
+        this.config = config;
+        this.streamSupplier = streamSupplier;
+    }
+
+    /**
+     * 从连接池领用一条连接（预热命中时已完成握手），应在请求 LLM 之前调用，让可能的握手和 LLM 首句生成并行
+     */
+    public void open() {
+        openedAt = System.currentTimeMillis();
+        client = connections.acquire(ttsConfig, this::onPcm, this::onFinished);
+        if (client == null) onFinished();
+    }
+
+    /**
+     * 送一句文本合成，首句会等待连接就绪
+     */
+    public void speak(String sentence) {
+        TTSClient c = client;
+        if (c == null || sentence == null || sentence.isBlank()) return;
+        try {
+            if (!c.awaitReady(config.getReadyTimeoutMs())) {
+                log.warn("百度 TTS 未能在 {} ms 内就绪，本轮改为只下发文本", config.getReadyTimeoutMs());
+                cancel();
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        c.sendText(sentence);
+        sentences++;
+    }
+
+    /**
+     * 所有句子已送出：通知服务端收尾
+     * @return 服务端合成完最后一句（或连接关闭）时完成，值为编码出的 Opus 帧数
+     */
+    public CompletableFuture<Integer> finish() {
+        TTSClient c = client;
+        if (c == null || sentences == 0 || !c.isOpen()) {
+            cancel();
+        } else {
+            c.finish();
+        }
+        return done;
+    }
+
+    /**
+     * 放弃剩余合成并关闭连接
+     */
+    public void cancel() {
+        TTSClient c = client;
+        client = null;
+        if (c != null) c.close();
+        onFinished();
+    }
+
+    private synchronized void onPcm(byte[] data) {
+        if (done.isDone()) return;
+        if (encoder == null) {
+            try {
+                AudioPacer.PacedStream stream = streamSupplier.get();
+                encoder = new OpusStreamEncoder(SAMPLE_RATE, stream::offer);
+                log.info("百度 TTS 首包音频到达，距领用连接 {} ms", System.currentTimeMillis() - openedAt);
+            } catch (Exception e) {
+                log.error("Opus 编码器初始化失败", e);
+                cancel();
+                return;
+            }
+        }
+
+        ByteBuffer pcm;
+        if (carry >= 0) {
+            pcm = ByteBuffer.allocate(data.length + 1);
+            pcm.put((byte) carry).put(data).flip();
+            carry = -1;
+        } else {
+            pcm = ByteBuffer.wrap(data);
+        }
+        pcm.order(ByteOrder.LITTLE_ENDIAN);
+        encoder.write(pcm.asShortBuffer());
+        if ((pcm.remaining() & 1) != 0) {
+            carry = pcm.get(pcm.limit() - 1) & 0xFF;
+        }
+    }
+
+    private synchronized void onFinished() {
+        if (done.isDone()) return;
+        int frames = encoder == null ? 0 : encoder.finish();
+        log.info("逐句合成结束: {} 句, {} 帧", sentences, frames);
+        done.complete(frames);
+    }
+}
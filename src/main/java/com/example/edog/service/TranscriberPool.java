@@ -0,0 +1,413 @@
+package com.example.edog.service;
+
+import com.alibaba.nls.client.protocol.InputFormatEnum;
+import com.alibaba.nls.client.protocol.NlsClient;
+import com.alibaba.nls.client.protocol.SampleRateEnum;
+import com.alibaba.nls.client.protocol.asr.SpeechTranscriber;
+import com.alibaba.nls.client.protocol.asr.SpeechTranscriberListener;
+import com.alibaba.nls.client.protocol.asr.SpeechTranscriberResponse;
+import com.example.edog.configurer.EdogProperties;
+import com.example.edog.utils.AliyunCredentials;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 阿里云实时识别会话池
+ * 预先建好 poolSize 路已 start() 的 SpeechTranscriber，设备连上（或识别重置）时直接领用，不用再等握手；
+ * 归还的会话在后台 stop/close，池子在后台补齐
+ *
+ * NlsClient 由后台维护线程按 Token 轮换：新 Client 建好后原子替换，旧 Client 按引用计数在最后一路会话关闭后才 shutdown，
+ * 领用路径上没有全局锁，断网重连时大量设备可以并发建会话
+ *
+ * 预热会话在领用前由维护线程定期补发静音保活，避免被服务端空闲超时断开；
+ * 监听器在建会话时就要确定，因此每路会话挂一个转发监听器，领用时再绑定真正的接收方
+ */
+@Service
+public class TranscriberPool {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscriberPool.class);
+
+    // 预热会话保活数据：20ms@16k 全零 PCM，只读共享
+    private static final byte[] KEEPALIVE_PCM = new byte[640];
+
+    private final AliyunTokenService tokenService;
+    private final EdogProperties.Asr config;
+
+    private final ConcurrentLinkedDeque<Lease> warm = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger warming = new AtomicInteger();
+    private final AtomicInteger leased = new AtomicInteger();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private final ScheduledExecutorService maintenance;
+    // start()/stop() 都是阻塞的网络交互，放到独立线程池里做
+    private final ExecutorService io;
+
+    private final Object clientInitLock = new Object();
+    private volatile ClientHandle client;
+    private volatile boolean shutdown = false;
+
+    public TranscriberPool(AliyunTokenService tokenService, EdogProperties properties) {
+        this.tokenService = tokenService;
+        this.config = properties.getAsr();
+
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "asr-pool");
+            t.setDaemon(true);
+            return t;
+        });
+        AtomicInteger ioIndex = new AtomicInteger();
+        this.io = Executors.newFixedThreadPool(Math.max(1, config.getIoThreads()), r -> {
+            Thread t = new Thread(r, "asr-pool-io-" + ioIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        // 启动时不阻塞，由维护线程拉 Token 并预热
+        maintenance.scheduleWithFixedDelay(this::maintain, 0, Math.max(100, config.getMaintenanceIntervalMs()), TimeUnit.MILLISECONDS);
+        log.info("识别会话池已启动: 预热数={}, 最长预热时长={}ms", config.getPoolSize(), config.getMaxWarmAgeMs());
+    }
+
+    /**
+     * 领用一路识别会话，优先取预热好的；池子为空时在当前线程新建
+     * @param listener 识别事件接收方
+     * @return 已 start() 的会话，失败返回 null
+     */
+    public Lease acquire(SpeechTranscriberListener listener) {
+        Lease lease;
+        while ((lease = warm.pollFirst()) != null) {
+            if (lease.isUsable() && lease.client == client) {
+                hits.incrementAndGet();
+                break;
+            }
+            discard(lease);
+        }
+        if (lease == null) {
+            misses.incrementAndGet();
+            try {
+                lease = create();
+            } catch (Exception e) {
+                log.error("识别会话创建失败", e);
+                return null;
+            } finally {
+                refill();
+            }
+        } else {
+            refill();
+        }
+        lease.listener.bind(listener);
+        leased.incrementAndGet();
+        return lease;
+    }
+
+    /**
+     * 归还会话：立即解绑接收方，stop/close 在后台完成，不阻塞调用方
+     */
+    public void release(Lease lease) {
+        if (lease == null || !lease.released.compareAndSet(false, true)) return;
+        lease.listener.bind(null);
+        leased.decrementAndGet();
+        closeAsync(lease);
+    }
+
+    public int getWarmCount() {
+        return warm.size();
+    }
+
+    public int getLeasedCount() {
+        return leased.get();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shutdown = true;
+        maintenance.shutdownNow();
+        Lease lease;
+        while ((lease = warm.pollFirst()) != null) {
+            closeQuietly(lease);
+        }
+        io.shutdown();
+        ClientHandle c = client;
+        if (c != null) c.release();
+    }
+
+    /**
+     * 维护：轮换 NlsClient、清理失效或过旧的预热会话、给预热会话保活、补齐池子
+     */
+    private void maintain() {
+        try {
+            rotateClient();
+        } catch (Exception e) {
+            log.warn("NlsClient 轮换失败，稍后重试: {}", e.getMessage());
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        ClientHandle current = client;
+        Iterator<Lease> it = warm.iterator();
+        while (it.hasNext()) {
+            Lease lease = it.next();
+            boolean stale = !lease.isUsable() || lease.client != current
+                    || now - lease.createdAt > config.getMaxWarmAgeMs();
+            if (stale) {
+                // 只有从队列里摘下成功才处理，避免和领用方抢同一路会话
+                if (warm.removeFirstOccurrence(lease)) discard(lease);
+            } else if (now - lease.lastSendAt >= config.getWarmKeepaliveMs()) {
+                try {
+                    lease.send(KEEPALIVE_PCM);
+                } catch (Exception e) {
+                    lease.listener.failed = true;
+                }
+            }
+        }
+        refill();
+    }
+
+    private void rotateClient() {
+        String token = tokenService.getToken();
+        ClientHandle current = client;
+        if (current != null && token.equals(current.token)) return;
+
+        ClientHandle fresh = new ClientHandle(newClient(token), token);
+        synchronized (clientInitLock) {
+            current = client;
+            client = fresh;
+        }
+        if (current != null) {
+            // 旧 Client 等其上的会话全部关闭后再 shutdown
+            current.release();
+            log.info("NlsClient 已切换到新 Token");
+        } else {
+            log.info("NlsClient 初始化成功");
+        }
+    }
+
+    private ClientHandle currentClient() {
+        ClientHandle c = client;
+        if (c != null) return c;
+        // 仅首次使用且维护线程还没初始化时才会走到这里
+        synchronized (clientInitLock) {
+            if (client == null) {
+                String token = tokenService.getToken();
+                client = new ClientHandle(newClient(token), token);
+                log.info("NlsClient 初始化成功");
+            }
+            return client;
+        }
+    }
+
+    private NlsClient newClient(String token) {
+        String url = config.getUrl();
+        return url == null || url.isEmpty() ? new NlsClient(token) : new NlsClient(url, token);
+    }
+
+    private void refill() {
+        if (shutdown) return;
+        while (warm.size() + warming.get() < config.getPoolSize()) {
+            warming.incrementAndGet();
+            try {
+                io.execute(() -> {
+                    try {
+                        warm.addLast(create());
+                    } catch (Exception e) {
+                        log.warn("预热识别会话失败: {}", e.getMessage());
+                    } finally {
+                        warming.decrementAndGet();
+                    }
+                });
+            } catch (Exception e) {
+                warming.decrementAndGet();
+                return;
+            }
+        }
+    }
+
+    private Lease create() throws Exception {
+        if (shutdown) throw new IllegalStateException("识别会话池已关闭");
+        ClientHandle handle;
+        do {
+            handle = currentClient();
+        } while (!handle.retain());
+
+        ForwardingListener listener = new ForwardingListener();
+        SpeechTranscriber transcriber = null;
+        try {
+            transcriber = new SpeechTranscriber(handle.client, listener);
+            transcriber.setAppKey(AliyunCredentials.APP_KEY);
+            transcriber.setFormat(InputFormatEnum.PCM);
+            transcriber.setSampleRate(SampleRateEnum.SAMPLE_RATE_16K);
+            transcriber.setEnablePunctuation(true);
+            transcriber.addCustomedParam("enable_inverse_text_normalization", true);
+            transcriber.setEnableIntermediateResult(false);
+            transcriber.start();
+            return new Lease(transcriber, handle, listener);
+        } catch (Exception e) {
+            if (transcriber != null) {
+                try { transcriber.close(); } catch (Exception ignored) {}
+            }
+            handle.release();
+            throw e;
+        }
+    }
+
+    private void discard(Lease lease) {
+        lease.released.set(true);
+        closeAsync(lease);
+    }
+
+    private void closeAsync(Lease lease) {
+        try {
+            io.execute(() -> closeQuietly(lease));
+        } catch (Exception e) {
+            closeQuietly(lease);
+        }
+    }
+
+    private static void closeQuietly(Lease lease) {
+        try {
+            lease.transcriber.stop();
+        } catch (Exception ignored) {
+        } finally {
+            try { lease.transcriber.close(); } catch (Exception ignored) {}
+            lease.client.release();
+        }
+    }
+
+    /**
+     * 一路识别会话
+     */
+    public static final class Lease {
+        private final SpeechTranscriber transcriber;
+        private final ClientHandle client;
+        private final ForwardingListener listener;
+        private final long createdAt = System.currentTimeMillis();
+        private final AtomicBoolean released = new AtomicBoolean(false);
+        private volatile long lastSendAt = createdAt;
+
+        private Lease(SpeechTranscriber transcriber, ClientHandle client, ForwardingListener listener) {
+            this.transcriber = transcriber;
+            this.client = client;
+            this.listener = listener;
+        }
+
+        /**
+         * SDK 把数组直接包进 WebSocket 帧、由 Netty 线程异步写出，不会同步拷贝；
+         * 调用方的数组（解码器输出）下一帧就会被复用，网络拥塞时排队未写出的帧会被覆盖，这里先拷贝
+         */
+        public void send(byte[] pcm) {
+            transcriber.send(pcm.clone());
+            lastSendAt = System.currentTimeMillis();
+        }
+
+        /**
+         * 服务端报错或已归还后不可再用
+         */
+        public boolean isUsable() {
+            return !listener.failed && !released.get();
+        }
+    }
+
+    /**
+     * 带引用计数的 NlsClient：池子持有一份，每路会话各持有一份，计数归零时 shutdown
+     */
+    private static final class ClientHandle {
+        final NlsClient client;
+        final String token;
+        final AtomicInteger refs = new AtomicInteger(1);
+
+        ClientHandle(NlsClient client, String token) {
+            this.client = client;
+            this.token = token;
+        }
+
+        /**
+         * @return false 表示已被 shutdown，需要改用新的 Client
+         */
+        boolean retain() {
+            int n;
+            do {
+                n = refs.get();
+                if (n <= 0) return false;
+            } while (!refs.compareAndSet(n, n + 1));
+            return true;
+        }
+
+        void release() {
+            if (refs.decrementAndGet() == 0) {
+                try {
+                    client.shutdown();
+                } catch (Exception e) {
+                    log.warn("关闭旧 NlsClient 失败", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 转发监听器：领用前事件直接丢弃，只记录失败状态
+     */
+    private static final class ForwardingListener extends SpeechTranscriberListener {
+        private volatile SpeechTranscriberListener target;
+        private volatile boolean failed = false;
+
+        void bind(SpeechTranscriberListener target) {
+            this.target = target;
+        }
+
+        @Override
+        public void onTranscriberStart(SpeechTranscriberResponse response) {
+            SpeechTranscriberListener t = target;
+            if (t != null) t.onTranscriberStart(response);
+        }
+
+        @Override
+        public void onSentenceBegin(SpeechTranscriberResponse response) {
+            SpeechTranscriberListener t = target;
+            if (t != null) t.onSentenceBegin(response);
+        }
+
+        @Override
+        public void onSentenceEnd(SpeechTranscriberResponse response) {
+            SpeechTranscriberListener t = target;
+            if (t != null) t.onSentenceEnd(response);
+        }
+
+        @Override
+        public void onTranscriptionResultChange(SpeechTranscriberResponse response) {
+            SpeechTranscriberListener t = target;
+            if (t != null) t.onTranscriptionResultChange(response);
+        }
+
+        @Override
+        public void onTranscriptionComplete(SpeechTranscriberResponse response) {
+            SpeechTranscriberListener t = target;
+            if (t != null) t.onTranscriptionComplete(response);
+        }
+
+        @Override
+        public void onFail(SpeechTranscriberResponse response) {
+            failed = true;
+            SpeechTranscriberListener t = target;
+            if (t != null) t.onFail(response);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.edog.service;
+
+import com.example.edog.configurer.EdogProperties;
+import com.example.edog.configurer.TTSClient;
+import com.example.edog.configurer.TTSConfig;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 百度流式 TTS 连接管理
+ * 每种语音参数预先建好 poolSize 条已收到 system.started 的连接，逐句合成时直接领用，首句不用再等 Token 请求和 WSS 握手；
+ * 百度的一条连接在 system.finish 后即结束，因此连接是一次性的，领用后由维护线程在后台补齐
+ *
+ * 所有连接的空闲超时共用一个只跑轻量任务的调度线程；池子维护（补齐时要取 Token、发起握手，可能阻塞）单独一个线程，
+ * 百度握手慢时不会拖住空闲连接的关闭；Token 由 BaiduAuthService 缓存到过期前，鉴权失败时由 TTSClient 作废
+ * 同时统计握手耗时（建连 → system.started）和首包耗时（首次送文本 → 首包音频）
+ */
+@Service
+public class TtsConnectionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(TtsConnectionManager.class);
+
+    private final EdogProperties.Tts config;
+    private final boolean enabled;
+
+    // 语音参数 -> 预热好的连接
+    private final Map<TTSConfig, ConcurrentLinkedDeque<TTSClient>> warm = new ConcurrentHashMap<>();
+    // 语音参数 -> 最近一次领用时间，超过 warmConfigTtlMs 没用到就不再预热
+    private final Map<TTSConfig, Long> lastUsed = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final LatencyStats handshake = new LatencyStats();
+    private final LatencyStats firstByte = new LatencyStats();
+
+    // 连接的空闲超时，只放不阻塞的任务
+    private final ScheduledExecutorService idleScheduler;
+    // 池子维护与预热建连
+    private final ScheduledExecutorService maintenanceScheduler;
+    private volatile boolean shutdown = false;
+
+    public TtsConnectionManager(EdogProperties properties) {
+        this.config = properties.getTts();
+        this.enabled = "baidu".equalsIgnoreCase(config.getMode());
+
+        this.idleScheduler = daemonScheduler("tts-idle");
+        this.maintenanceScheduler = daemonScheduler("tts-refill");
+        if (enabled) {
+            lastUsed.put(TTSConfig.DEFAULT, System.currentTimeMillis());
+            maintenanceScheduler.scheduleWithFixedDelay(this::maintain, 0, Math.max(100, config.getMaintenanceIntervalMs()), TimeUnit.MILLISECONDS);
+            log.info("TTS 连接池已启动: 每种语音参数预热 {} 条, 最长预热时长={}ms", config.getPoolSize(), config.getMaxWarmAgeMs());
+        }
+    }
+
+    /**
+     * 领用一条连接，优先取预热好的；没有时新建并发起连接（不等待握手，调用方送文本前用 awaitReady 等待）
+     * @param audioCallback PCM 接收方
+     * @param onFinished 合成结束或连接关闭时回调
+     * @return 连接，Token 获取或建连失败时返回 null
+     */
+    public TTSClient acquire(TTSConfig ttsConfig, Consumer<byte[]> audioCallback, Runnable onFinished) {
+        lastUsed.put(ttsConfig, System.currentTimeMillis());
+        TTSClient client = pollWarm(ttsConfig);
+        if (client != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            try {
+                client = open(ttsConfig);
+            } catch (Exception e) {
+                log.error("百度 TTS 连接创建失败", e);
+                return null;
+            }
+        }
+
+        TTSClient leased = client;
+        leased.setAudioCallback(audioCallback);
+        leased.setOnFinished(() -> {
+            record(leased);
+            onFinished.run();
+        });
+        // 领用后改用会话的空闲超时
+        leased.setIdleTimeout(config.getIdleTimeoutMs());
+        return leased;
+    }
+
+    public int getWarmCount() {
+        int count = 0;
+        for (ConcurrentLinkedDeque<TTSClient> deque : warm.values()) count += deque.size();
+        return count;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public LatencyStats getHandshakeStats() {
+        return handshake;
+    }
+
+    public LatencyStats getFirstByteStats() {
+        return firstByte;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shutdown = true;
+        maintenanceScheduler.shutdownNow();
+        idleScheduler.shutdownNow();
+        for (ConcurrentLinkedDeque<TTSClient> deque : warm.values()) {
+            TTSClient client;
+            while ((client = deque.pollFirst()) != null) client.close();
+        }
+    }
+
+    private TTSClient pollWarm(TTSConfig ttsConfig) {
+        ConcurrentLinkedDeque<TTSClient> deque = warm.get(ttsConfig);
+        if (deque == null) return null;
+        TTSClient client;
+        while ((client = deque.pollFirst()) != null) {
+            // 还在握手的连接也可以领用，总比从头建连快
+            if (!client.isClosed() && !client.isClosing()) return client;
+            client.close();
+        }
+        return null;
+    }
+
+    private TTSClient open(TTSConfig ttsConfig) throws Exception {
+        TTSClient client = new TTSClient(null, ttsConfig, idleScheduler);
+        client.connect();
+        return client;
+    }
+
+    /**
+     * 维护：清理断开或过旧的预热连接，给最近用到的语音参数补齐预热
+     */
+    private void maintain() {
+        if (shutdown) return;
+        long now = System.currentTimeMillis();
+        lastUsed.entrySet().removeIf(e -> !TTSConfig.DEFAULT.equals(e.getKey())
+                && now - e.getValue() > config.getWarmConfigTtlMs());
+
+        for (Map.Entry<TTSConfig, ConcurrentLinkedDeque<TTSClient>> entry : warm.entrySet()) {
+            boolean retired = !lastUsed.containsKey(entry.getKey());
+            ConcurrentLinkedDeque<TTSClient> deque = entry.getValue();
+            Iterator<TTSClient> it = deque.iterator();
+            while (it.hasNext()) {
+                TTSClient client = it.next();
+                // 握手中的连接也算在内，只有已关闭或超龄的才清理
+                boolean stale = retired || client.isClosed() || client.isClosing()
+                        || now - client.getCreatedAt() > config.getMaxWarmAgeMs();
+                // 只有从队列里摘下成功才处理，避免和领用方抢同一条连接
+                if (stale && deque.removeFirstOccurrence(client)) client.close();
+            }
+        }
+        warm.entrySet().removeIf(e -> !lastUsed.containsKey(e.getKey()) && e.getValue().isEmpty());
+
+        for (TTSConfig ttsConfig : lastUsed.keySet()) {
+            ConcurrentLinkedDeque<TTSClient> deque = warm.computeIfAbsent(ttsConfig, k -> new ConcurrentLinkedDeque<>());
+            while (!shutdown && deque.size() < config.getPoolSize()) {
+                try {
+                    TTSClient client = open(ttsConfig);
+                    // 预热期间没有文本，空闲超时放宽到预热时长
+                    client.setIdleTimeout(config.getMaxWarmAgeMs());
+                    deque.addLast(client);
+                } catch (Exception e) {
+                    log.warn("TTS 预热连接创建失败，稍后重试: {}", e.getMessage());
+                    return;
+                }
+            }
+        }
+    }
+
+    private static ScheduledExecutorService daemonScheduler(String name) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        return Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name + "-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private void record(TTSClient client) {
+        long handshakeMs = client.getHandshakeMs();
+        long firstByteMs = client.getFirstByteMs();
+        if (handshakeMs >= 0) handshake.record(handshakeMs);
+        if (firstByteMs >= 0) firstByte.record(firstByteMs);
+        log.info("TTS 连接结束: 握手 {} ms, 首包 {} ms (平均握手 {} ms, 平均首包 {} ms, 预热命中 {}/{})",
+                handshakeMs, firstByteMs, handshake.getAvgMs(), firstByte.getAvgMs(),
+                hits.get(), hits.get() + misses.get());
+    }
+
+    /**
+     * 耗时统计：次数、平均、最大
+     */
+    public static final class LatencyStats {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalMs = new AtomicLong();
+        private final AtomicLong maxMs = new AtomicLong();
+
+        void record(long ms) {
+            count.incrementAndGet();
+            totalMs.addAndGet(ms);
+            maxMs.accumulateAndGet(ms, Math::max);
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getAvgMs() {
+            long n = count.get();
+            return n == 0 ? 0 : totalMs.get() / n;
+        }
+
+        public long getMaxMs() {
+            return maxMs.get();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.edog.service;
+
+import com.example.edog.configurer.EdogProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 对话轮次执行器
+ * 取代每句 ASR 结果 new Thread 的做法：全局并发有上限、排队有上限，同一会话内的轮次严格串行
+ *
+ * 每个会话一条 lane，lane 同一时刻最多只占用一个执行线程；lane 执行完一轮后重新排队，
+ * 保证繁忙会话不会饿死其他会话。超出会话排队上限或全局排队上限的提交直接拒绝，由调用方决定如何反馈
+ * lane 排空即从表中移除，会话断开后才到的提交执行完也不会留下 lane
+ */
+@Service
+public class TurnExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(TurnExecutor.class);
+
+    private final ExecutorService executor;
+    // 虚拟线程模式下用信号量限制并发；平台线程模式下线程数本身就是上限
+    private final Semaphore limiter;
+    private final boolean virtual;
+    private final int queueCapacity;
+    private final int perSessionQueueLimit;
+
+    private final Map<String, SessionLane> lanes = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+
+    public TurnExecutor(EdogProperties properties) {
+        EdogProperties.Turn cfg = properties.getTurn();
+        int maxConcurrent = Math.max(1, cfg.getMaxConcurrent());
+        this.queueCapacity = Math.max(1, cfg.getQueueCapacity());
+        this.perSessionQueueLimit = Math.max(1, cfg.getPerSessionQueueLimit());
+
+        ExecutorService virtualExecutor = cfg.isVirtualThreads() ? newVirtualThreadExecutor() : null;
+        if (virtualExecutor != null) {
+            this.executor = virtualExecutor;
+            this.limiter = new Semaphore(maxConcurrent);
+            this.virtual = true;
+        } else {
+            if (cfg.isVirtualThreads()) {
+                log.warn("当前 JVM 不支持虚拟线程，对话执行器回退为平台线程池");
+            }
+            AtomicInteger threadIndex = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(maxConcurrent, maxConcurrent,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                        Thread t = new Thread(r, "turn-" + threadIndex.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            this.executor = pool;
+            this.limiter = null;
+            this.virtual = false;
+        }
+        log.info("对话执行器已启动: 并发上限={}, 排队上限={}, 单会话排队上限={}, 虚拟线程={}",
+                maxConcurrent, queueCapacity, perSessionQueueLimit, virtual);
+    }
+
+    /**
+     * 提交一轮对话
+     * @return false 表示已达到排队上限被拒绝，任务不会执行
+     */
+    public boolean submit(String sessionId, Runnable turn) {
+        while (true) {
+            SessionLane lane = lanes.computeIfAbsent(sessionId, SessionLane::new);
+            synchronized (lane) {
+                // 拿到 lane 之后它刚好排空移除了，换一条新的
+                if (lane.retired) continue;
+                if (lane.closed || lane.tasks.size() >= perSessionQueueLimit || queued.get() >= queueCapacity) {
+                    rejected.incrementAndGet();
+                    log.warn("对话轮次被拒绝: session={}, 会话排队={}, 全局排队={}", sessionId, lane.tasks.size(), queued.get());
+                    return false;
+                }
+                lane.tasks.add(turn);
+                queued.incrementAndGet();
+                if (!lane.running) {
+                    lane.running = true;
+                    dispatch(lane);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 会话断开时丢弃其尚未开始的轮次
+     */
+    public void removeSession(String sessionId) {
+        SessionLane lane = lanes.remove(sessionId);
+        if (lane == null) return;
+        synchronized (lane) {
+            lane.closed = true;
+            queued.addAndGet(-lane.tasks.size());
+            lane.tasks.clear();
+        }
+    }
+
+    public int getActiveTurns() {
+        return active.get();
+    }
+
+    public int getQueuedTurns() {
+        return queued.get();
+    }
+
+    public long getRejectedTurns() {
+        return rejected.get();
+    }
+
+    public long getCompletedTurns() {
+        return completed.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void dispatch(SessionLane lane) {
+        try {
+            executor.execute(() -> runNext(lane));
+        } catch (RejectedExecutionException e) {
+            // 只会在应用关闭时发生
+            synchronized (lane) {
+                queued.addAndGet(-lane.tasks.size());
+                lane.tasks.clear();
+                retire(lane);
+            }
+        }
+    }
+
+    private void runNext(SessionLane lane) {
+        Runnable task;
+        synchronized (lane) {
+            task = lane.tasks.poll();
+            if (task == null) {
+                retire(lane);
+                return;
+            }
+            queued.decrementAndGet();
+        }
+
+        boolean acquired = false;
+        try {
+            if (limiter != null) {
+                limiter.acquire();
+                acquired = true;
+            }
+            active.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                active.decrementAndGet();
+                completed.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable t) {
+            log.error("对话轮次执行异常", t);
+        } finally {
+            if (acquired) limiter.release();
+        }
+
+        // 每执行完一轮重新排队，让其他会话有机会执行
+        synchronized (lane) {
+            if (lane.tasks.isEmpty()) {
+                retire(lane);
+            } else {
+                dispatch(lane);
+            }
+        }
+    }
+
+    /**
+     * lane 排空后移出表，调用方需持有 lane 锁；之后同一会话的提交会新建 lane
+     */
+    private void retire(SessionLane lane) {
+        lane.running = false;
+        lane.retired = true;
+        lanes.remove(lane.sessionId, lane);
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static final class SessionLane {
+        final String sessionId;
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        boolean running = false;
+        boolean closed = false;
+        // 已排空并移出表，不再接收提交
+        boolean retired = false;
+
+        SessionLane(String sessionId) {
+            this.sessionId = sessionId;
+        }
+    }
+}
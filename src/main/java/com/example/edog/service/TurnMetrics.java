@@ -0,0 +1,82 @@
+package com.example.edog.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一轮语音对话各阶段的耗时指标
+ * 每个阶段一个 edog.turn.stage 计时器（stage 标签区分），发布直方图，Prometheus 端按 histogram_quantile 求 p50/p99，
+ * p99 抖动时能直接看出是哪一跳变慢
+ *
+ * 以 ASR 断句为起点的阶段（queue、first_frame、last_frame）反映用户感知的延迟；
+ * 以智能体请求为起点的阶段（first_delta、audio_url）反映 Coze 本身；download、transcode 只计音频链路
+ */
+@Service
+public class TurnMetrics {
+
+    public enum Stage {
+        // ASR 从句子开始到断句
+        ASR("asr"),
+        // 断句 -> 请求智能体（执行器排队 + 语音参数解析）
+        QUEUE("queue"),
+        // 请求智能体 -> 第一个文本增量
+        FIRST_DELTA("first_delta"),
+        // 请求智能体 -> 拿到音频链接
+        AUDIO_URL("audio_url"),
+        // 打开音频链接到收到响应头
+        DOWNLOAD("download"),
+        // 边下载边转码，从响应头到最后一帧编码完成
+        TRANSCODE("transcode"),
+        // 断句 -> 第一帧音频写出到设备
+        FIRST_FRAME("first_frame"),
+        // 断句 -> 最后一帧音频写出到设备
+        LAST_FRAME("last_frame");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final Map<Stage, Timer> timers = new EnumMap<>(Stage.class);
+    private final Counter interrupted;
+
+    public TurnMetrics(MeterRegistry registry) {
+        for (Stage stage : Stage.values()) {
+            timers.put(stage, Timer.builder("edog.turn.stage")
+                    .description("语音对话各阶段耗时")
+                    .tag("stage", stage.tag)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(60))
+                    .register(registry));
+        }
+        this.interrupted = Counter.builder("edog.turn.interrupted")
+                .description("被用户打断的回复数").register(registry);
+    }
+
+    /**
+     * 记录从 beginNanos（System.nanoTime）到现在的耗时，beginNanos 为 0 表示起点未知，不记录
+     */
+    public void recordSince(Stage stage, long beginNanos) {
+        if (beginNanos == 0) return;
+        record(stage, System.nanoTime() - beginNanos);
+    }
+
+    public void record(Stage stage, long nanos) {
+        if (nanos < 0) return;
+        timers.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void markInterrupted() {
+        interrupted.increment();
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.edog.service;
+
+import com.example.edog.configurer.TTSConfig;
+import com.example.edog.entity.Account;
+import lombok.Getter;
+
+/**
+ * 一个账号的语音参数（不可变）：Coze 音色与语速，以及对应的百度 TTS 参数
+ */
+@Getter
+public class VoiceProfile {
+
+    public static final String DEFAULT_VOICE_ID = "7568423452617523254";
+    public static final VoiceProfile DEFAULT = new VoiceProfile(DEFAULT_VOICE_ID, 1.0, 70);
+
+    private final String voiceId;
+    private final Double speedRatio;
+    private final Integer vol;
+    private final TTSConfig ttsConfig;
+
+    public VoiceProfile(String voiceId, Double speedRatio, Integer vol) {
+        this.voiceId = voiceId;
+        this.speedRatio = speedRatio;
+        this.vol = vol;
+        this.ttsConfig = TTSConfig.of(speedRatio, vol);
+    }
+
+    /**
+     * 由账号记录生成，缺省字段取默认值
+     */
+    public static VoiceProfile of(Account account) {
+        if (account == null) return DEFAULT;
+        String voiceId = account.getVoiceId() != null && !account.getVoiceId().isEmpty()
+                ? account.getVoiceId() : DEFAULT.voiceId;
+        Double speedRatio = account.getSpeedRatio() != null ? account.getSpeedRatio() : DEFAULT.speedRatio;
+        Integer vol = account.getVol() != null ? account.getVol() : DEFAULT.vol;
+        return new VoiceProfile(voiceId, speedRatio, vol);
+    }
+}
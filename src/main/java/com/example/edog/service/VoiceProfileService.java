@@ -0,0 +1,64 @@
+package com.example.edog.service;
+
+import com.example.edog.entity.Account;
+import com.example.edog.mapper.AccountMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按账号缓存的语音参数
+ * 设备连接时从数据库解析一次，之后每轮对话直接取缓存；修改语音参数时整体替换，
+ * 同一账号下的所有会话从下一轮起使用新参数，其他账号不受影响
+ */
+@Service
+public class VoiceProfileService {
+
+    private static final Logger log = LoggerFactory.getLogger(VoiceProfileService.class);
+
+    @Autowired
+    private AccountMapper accountMapper;
+
+    private final Map<Long, VoiceProfile> profiles = new ConcurrentHashMap<>();
+
+    /**
+     * 取账号的语音参数，未缓存时查库；账号为空或无效时返回默认参数
+     * 不带账号的旧固件由 WebSocketServer 按 edog.device.legacy-account 归到对应账号后再来取
+     */
+    public VoiceProfile get(String account) {
+        Long key = parse(account);
+        if (key == null) return VoiceProfile.DEFAULT;
+        VoiceProfile cached = profiles.get(key);
+        if (cached != null) return cached;
+        try {
+            return profiles.computeIfAbsent(key, k -> VoiceProfile.of(accountMapper.selectByAccount(k)));
+        } catch (Exception e) {
+            log.error("语音参数加载失败: account={}", account, e);
+            return VoiceProfile.DEFAULT;
+        }
+    }
+
+    /**
+     * 账号语音参数已修改，用最新记录替换缓存
+     */
+    public void update(Account account) {
+        if (account == null || account.getAccount() == null) return;
+        VoiceProfile profile = VoiceProfile.of(account);
+        profiles.put(account.getAccount(), profile);
+        log.info("账号 {} 语音参数已更新: voiceId={}, speed={}, vol={}",
+                account.getAccount(), profile.getVoiceId(), profile.getSpeedRatio(), profile.getVol());
+    }
+
+    private static Long parse(String account) {
+        if (account == null || account.isEmpty()) return null;
+        try {
+            return Long.valueOf(account);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
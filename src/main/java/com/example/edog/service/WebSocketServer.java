@@ -1,8 +1,13 @@
 package com.example.edog.service;
 
-import com.example.edog.entity.Account;
+import com.example.edog.configurer.EdogProperties;
 import com.example.edog.utils.AudioConverter;
+import com.example.edog.utils.CommandIndex;
 import com.example.edog.utils.CozeAPI;
+import com.example.edog.utils.CozeStreamListener;
+import com.example.edog.utils.HashedWheelTimer;
+import com.example.edog.utils.OrderWebSocketHandler;
+import com.example.edog.utils.SentenceSplitter;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,12 +15,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.socket.*;
 import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.util.UriComponentsBuilder;
 
-import java.nio.ByteBuffer;
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -25,100 +33,116 @@ public class WebSocketServer extends AbstractWebSocketHandler {
     private static final Logger log = LoggerFactory.getLogger(WebSocketServer.class);
 
     @Autowired
-    private AliyunTokenService tokenService;
+    private TranscriberPool transcriberPool;
 
-    private final Map<String, AliyunRealtimeASR> asrServices = new ConcurrentHashMap<>();
-    private final Map<String, Timer> sessionTimers = new ConcurrentHashMap<>(); 
-    private final Map<String, AtomicBoolean> sessionBusyState = new ConcurrentHashMap<>();
-    
-    // 记录最后一次发送给 ASR 数据的时间戳
-    private final Map<String, Long> lastAsrSendTime = new ConcurrentHashMap<>();
+    @Autowired
+    private AudioPacer audioPacer;
 
-    private final CozeAPI cozeAPI = new CozeAPI();
+    @Autowired
+    private TurnExecutor turnExecutor;
 
-    private static volatile String currentVoiceId = "7568423452617523254";
-    private static volatile Double currentSpeedRatio = 1.0;
+    @Autowired
+    private HashedWheelTimer wheelTimer;
 
-    // Opus 静音帧
-    private static final byte[] OPUS_SILENCE_FRAME = new byte[]{(byte) 0xF8, (byte) 0xFF, (byte) 0xFE};
+    @Autowired
+    private EdogProperties properties;
 
-    public static void setVoiceParams(Account account) {
-        if (account != null) {
-            if (account.getVoiceId() != null && !account.getVoiceId().isEmpty()) {
-                currentVoiceId = account.getVoiceId();
-            }
-            if (account.getSpeedRatio() != null) {
-                currentSpeedRatio = account.getSpeedRatio();
-            }
-            log.info("语音参数已全局更新: voiceId={}, speed={}", currentVoiceId, currentSpeedRatio);
-        }
-    }
+    @Autowired
+    private ReplyAudioCache replyAudioCache;
 
-    public static void setVoiceParams(String voiceId, Double speedRatio) {
-        if (voiceId != null && !voiceId.isEmpty()) currentVoiceId = voiceId;
-        if (speedRatio != null) currentSpeedRatio = speedRatio;
-        log.info("语音参数已全局更新: voiceId={}, speed={}", currentVoiceId, currentSpeedRatio);
-    }
+    @Autowired
+    private CommandCache commandCache;
+
+    @Autowired
+    private VoiceProfileService voiceProfileService;
+
+    @Autowired
+    private TtsConnectionManager ttsConnectionManager;
+
+    @Autowired
+    private ConversationJournal conversationJournal;
+
+    @Autowired
+    private TurnMetrics turnMetrics;
+
+    // 出站发送统一走并发装饰器，节拍线程、心跳和回复线程可以同时安全地写同一个会话
+    private static final int SEND_TIME_LIMIT_MS = 10_000;
+    private static final int SEND_BUFFER_LIMIT = 512 * 1024;
+
+    // 没有音频时，给设备留出展示文本的时间再解锁
+    private static final long NO_AUDIO_UNLOCK_DELAY_MS = 2000;
+
+    private final Map<String, AliyunRealtimeASR> asrServices = new ConcurrentHashMap<>();
+    private final Map<String, List<HashedWheelTimer.Timeout>> sessionTimers = new ConcurrentHashMap<>();
+    private final Map<String, AtomicBoolean> sessionBusyState = new ConcurrentHashMap<>();
+    private final Map<String, WebSocketSession> outboundSessions = new ConcurrentHashMap<>();
+    // 正在进行的回复，用户打断时据此取消
+    private final Map<String, ReplyTurn> activeTurns = new ConcurrentHashMap<>();
+    // ESP32 连接时通过 /esp32?account=xxx 上报的账号，用于找到同账号的机械狗
+    private final Map<String, String> sessionAccounts = new ConcurrentHashMap<>();
+
+    @Autowired
+    private CozeAPI cozeAPI;
 
     @Override
-    public void afterConnectionEstablished(@NotNull WebSocketSession session) throws Exception {
-        String id = session.getId();
+    public void afterConnectionEstablished(@NotNull WebSocketSession rawSession) throws Exception {
+        String id = rawSession.getId();
         log.info("ESP32 Connected: {}", id);
 
+        WebSocketSession session = new ConcurrentWebSocketSessionDecorator(rawSession, SEND_TIME_LIMIT_MS, SEND_BUFFER_LIMIT);
+        outboundSessions.put(id, session);
+        String account = accountOf(rawSession);
+        if (account == null) {
+            // 旧固件连接地址不带 ?account，单狗部署归到 edog.device.legacy-account，手机端改语音参数仍能生效
+            account = properties.getDevice().legacyAccountOrNull();
+            if (account == null) log.warn("ESP32 未上报账号，使用默认语音参数、不匹配本地命令: {}", id);
+        }
+        if (account != null) {
+            sessionAccounts.put(id, account);
+            // 连接时解析一次语音参数，之后每轮直接取缓存
+            voiceProfileService.get(account);
+        }
+
         sessionBusyState.put(id, new AtomicBoolean(false));
-        lastAsrSendTime.put(id, System.currentTimeMillis()); 
 
-        AliyunRealtimeASR asr = new AliyunRealtimeASR();
+        AliyunRealtimeASR asr = new AliyunRealtimeASR(properties.getVad());
         asr.setOnResultCallback(text -> {
+            long sentenceEndAt = System.nanoTime();
+            turnMetrics.record(TurnMetrics.Stage.ASR, asr.getLastSentenceNanos());
             if (isSessionBusy(id)) return;
-            handleUserQuestion(session, text);
+            handleUserQuestion(session, text, sentenceEndAt);
         });
 
-        try {
-            String token = tokenService.getToken();
-            asr.start(token);
-            asrServices.put(id, asr);
-        } catch (Exception e) {
-            log.error("ASR 启动失败", e);
+        asr.start(transcriberPool);
+        if (!asr.isRunning()) {
+            log.error("ASR 启动失败");
             session.close();
             return;
         }
+        asrServices.put(id, asr);
+
+        // 启动定时任务（挂在全局时间轮上，不再每个连接一个 Timer 线程）
+        EdogProperties.Heartbeat heartbeat = properties.getHeartbeat();
 
-        // 启动定时任务
-        Timer timer = new Timer(true);
-        
         // 1. WebSocket 心跳
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                try {
-                    if (session.isOpen()) session.sendMessage(new PingMessage());
-                } catch (Exception e) {}
-            }
-        }, 5000, 5000);
-
-        // 2. ASR 保活任务
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                try {
-                    AliyunRealtimeASR currentAsr = asrServices.get(id);
-                    if (currentAsr == null || !session.isOpen()) return;
-
-                    long lastTime = lastAsrSendTime.getOrDefault(id, 0L);
-                    long now = System.currentTimeMillis();
-
-                    if (now - lastTime > 800) {
-                        currentAsr.sendOpusStream(OPUS_SILENCE_FRAME);
-                        lastAsrSendTime.put(id, now);
-                    }
-                } catch (Exception e) {
-                    log.error("保活帧发送失败", e);
-                }
+        HashedWheelTimer.Timeout ping = wheelTimer.scheduleAtFixedRate(() -> {
+            try {
+                if (session.isOpen()) session.sendMessage(new PingMessage());
+            } catch (Exception e) {}
+        }, heartbeat.getPingIntervalMs(), heartbeat.getPingIntervalMs());
+
+        // 2. ASR 保活任务（VAD 拦下静音后，只在长时间没送数据时补一小段保活数据）
+        HashedWheelTimer.Timeout keepalive = wheelTimer.scheduleAtFixedRate(() -> {
+            try {
+                AliyunRealtimeASR currentAsr = asrServices.get(id);
+                if (currentAsr == null || !session.isOpen()) return;
+                currentAsr.keepAlive();
+            } catch (Exception e) {
+                log.error("保活帧发送失败", e);
             }
-        }, 1000, 500); 
+        }, 1000, heartbeat.getAsrKeepaliveIntervalMs());
 
-        sessionTimers.put(id, timer);
+        sessionTimers.put(id, List.of(ping, keepalive));
     }
 
     @Override
@@ -128,15 +152,14 @@ public class WebSocketServer extends AbstractWebSocketHandler {
 
         if (asr != null) {
             try {
-                lastAsrSendTime.put(id, System.currentTimeMillis());
-
                 if (isSessionBusy(id)) {
-                    asr.sendOpusStream(OPUS_SILENCE_FRAME);
+                    // 回复播放期间只做语音检测（未开启打断时只维持连接），用户持续说话则打断本轮回复
+                    if (asr.detectBargeIn(message.getPayload())) {
+                        interruptTurn(id);
+                    }
                 } else {
-                    ByteBuffer payload = message.getPayload();
-                    byte[] opusData = new byte[payload.remaining()];
-                    payload.get(opusData);
-                    asr.sendOpusStream(opusData);
+                    // 直接把负载交给解码器，不再逐帧拷贝
+                    asr.sendOpusStream(message.getPayload());
                 }
             } catch (Exception e) {
                 log.error("ASR 发送异常, 尝试重置", e);
@@ -145,106 +168,414 @@ public class WebSocketServer extends AbstractWebSocketHandler {
         }
     }
 
-    private void resetAsr(WebSocketSession session, String id, AliyunRealtimeASR oldAsr) {
+    private void resetAsr(WebSocketSession rawSession, String id, AliyunRealtimeASR oldAsr) {
         if (oldAsr != null) oldAsr.stop();
-        AliyunRealtimeASR newAsr = new AliyunRealtimeASR();
+        WebSocketSession session = outboundSessions.getOrDefault(id, rawSession);
+        AliyunRealtimeASR newAsr = new AliyunRealtimeASR(properties.getVad());
         newAsr.setOnResultCallback(text -> {
-            if (!isSessionBusy(id)) handleUserQuestion(session, text);
+            long sentenceEndAt = System.nanoTime();
+            turnMetrics.record(TurnMetrics.Stage.ASR, newAsr.getLastSentenceNanos());
+            if (!isSessionBusy(id)) handleUserQuestion(session, text, sentenceEndAt);
         });
-        try {
-            newAsr.start(tokenService.getToken());
+        newAsr.start(transcriberPool);
+        if (newAsr.isRunning()) {
             asrServices.put(id, newAsr);
             log.info("ASR 引擎已自动恢复");
-        } catch (Exception ex) {
-            log.error("ASR 恢复失败", ex);
+        } else {
+            log.error("ASR 恢复失败");
         }
     }
 
-    private void handleUserQuestion(WebSocketSession session, String question) {
+    /**
+     * @param sentenceEndAt ASR 断句时刻（nanoTime），各阶段耗时以此为起点
+     */
+    private void handleUserQuestion(WebSocketSession session, String question, long sentenceEndAt) {
         String id = session.getId();
+        if (tryLocalCommand(session, question)) return;
         setSessionBusy(id, true);
 
-        new Thread(() -> {
+        boolean accepted = turnExecutor.submit(id, () -> {
+            ReplyTurn turn = null;
             try {
-                String shouldUseVoiceId = currentVoiceId;
-                Double shouldUseSpeed = currentSpeedRatio;
+                String account = sessionAccounts.get(id);
+                VoiceProfile profile = voiceProfileService.get(account);
+                String shouldUseVoiceId = profile.getVoiceId();
+                Double shouldUseSpeed = profile.getSpeedRatio();
 
                 log.info("请求智能体: '{}' (Locking session)", question);
 
-                String[] response = cozeAPI.CozeRequest(question, shouldUseVoiceId, shouldUseSpeed, true);
+                turn = new ReplyTurn(session, shouldUseVoiceId, shouldUseSpeed, sentenceEndAt);
+                if ("baidu".equalsIgnoreCase(properties.getTts().getMode())) {
+                    turn.useSentenceSynthesis(profile);
+                }
+                activeTurns.put(id, turn);
+                turn.markRequested();
+                cozeAPI.CozeStreamRequest(question, shouldUseVoiceId, shouldUseSpeed, turn);
+                turn.finish();
+                // 异步落库，不等数据库
+                conversationJournal.append(account, question, turn.getReplyText());
+            } catch (Exception e) {
+                log.error("处理失败", e);
+                if (turn == null) {
+                    setSessionBusy(id, false);
+                    return;
+                }
+                // 按打断处理：取消合成和节拍器里的流，interrupt 内以 activeTurns.remove(id, turn) 只解锁本轮
+                boolean registered = activeTurns.get(id) == turn;
+                turn.interrupt();
+                // 登记之前就失败的，会话锁仍是本轮持有，这里解锁
+                if (!registered && !activeTurns.containsKey(id)) setSessionBusy(id, false);
+            }
+        });
+        if (!accepted) {
+            // 执行器已满载，丢弃本句并立即解锁，让用户可以重新说
+            log.warn("对话执行器繁忙，丢弃本句: '{}'", question);
+            setSessionBusy(id, false);
+        }
+    }
 
-                if (response != null && response.length >= 2) {
-                    String audioUrl = response[0];
-                    String replyText = response[1];
+    /**
+     * 用户打断：停止当前回复并立即解锁，打断的这句话已经送入识别，识别完成后按正常流程处理
+     */
+    private void interruptTurn(String id) {
+        ReplyTurn turn = activeTurns.get(id);
+        if (turn == null) return;
+        log.info("检测到用户打断，停止当前回复");
+        turnMetrics.markInterrupted();
+        turn.interrupt();
+    }
 
-                    if (!session.isOpen()) {
-                        setSessionBusy(id, false);
-                        return;
-                    }
+    /**
+     * 本地命令匹配：识别文本和当前账号的命令足够相似时直接下发给机械狗，不走智能体
+     * @return true 表示已作为命令处理
+     */
+    private boolean tryLocalCommand(WebSocketSession session, String question) {
+        EdogProperties.Intent intent = properties.getIntent();
+        if (!intent.isEnabled()) return false;
+
+        long begin = System.nanoTime();
+        String account = sessionAccounts.get(session.getId());
+        if (account == null) return false;
+        CommandIndex.Match match = commandCache.getIndex(account)
+                .match(question, intent.getThreshold(), intent.getMinMargin());
+        if (match == null) return false;
+
+        log.info("本地命令命中: '{}' -> '{}' (相似度 {}, 耗时 {} us)", question, match.getContent(),
+                String.format("%.2f", match.getScore()), (System.nanoTime() - begin) / 1000);
+        OrderWebSocketHandler.sendMessage(account, "dog", match.getMessage());
+
+        // 告知设备本句已作为命令执行，不会有语音回复
+        try {
+            if (session.isOpen()) {
+                session.sendMessage(new TextMessage(buildTtsMessage("start", match.getContent())));
+                session.sendMessage(new TextMessage("{\"type\":\"tts\",\"state\":\"end\"}"));
+            }
+        } catch (Exception e) {
+            log.error("命令回显下发失败", e);
+        }
+        return true;
+    }
 
-                    // 1. 发送文本
-                    String startJson = String.format("{\"type\":\"tts\",\"state\":\"start\",\"text\":\"%s\"}",
-                            replyText.replace("\"", "\\\"").replace("\n", ""));
-                    session.sendMessage(new TextMessage(startJson));
-
-                    // 2. 发送音频
-                    long estimatedPlaybackDuration = 0;
-                    long timeSpentSending = 0; 
-
-                    if (audioUrl != null && !audioUrl.isEmpty()) {
-                        String mp3Path = cozeAPI.downloadAudio(audioUrl, "coze_audio");
-                        if (mp3Path != null) {
-                            List<byte[]> opusFrames = AudioConverter.convertMp3ToOpusFrames(mp3Path);
-                            if (opusFrames != null && !opusFrames.isEmpty()) {
-                                int frameDurationMs = 60;
-                                estimatedPlaybackDuration = (long) opusFrames.size() * frameDurationMs;
-                                timeSpentSending = (long) opusFrames.size() * 50;
-
-                                log.info("音频帧数: {}, 预估播放时长: {} ms", opusFrames.size(), estimatedPlaybackDuration);
-
-                                for (byte[] frame : opusFrames) {
-                                    if (!session.isOpen()) break;
-                                    session.sendMessage(new BinaryMessage(frame));
-                                    
-                                    // 发送数据也要更新时间戳，避免ASR保活逻辑冲突
-                                    lastAsrSendTime.put(id, System.currentTimeMillis());
-                                    Thread.sleep(50); 
-                                }
-                            }
-                        }
-                    } else {
-                        estimatedPlaybackDuration = 2000;
-                        timeSpentSending = 0;
-                    }
+    /**
+     * 一轮对话的流式回复
+     * 第一句文本凑齐就下发 tts start，后续句子用 sentence_start 追加；拿到音频链接立即开始推音频，不再等整轮生成结束
+     * 逐句合成模式下不使用 Coze 的音频链接，每句文本同时送百度 TTS，合成出的音频直接推给设备
+     */
+    private class ReplyTurn implements CozeStreamListener {
+        private final WebSocketSession session;
+        private final String id;
+        private final String voiceId;
+        private final Double speedRatio;
+        private final SentenceSplitter splitter = new SentenceSplitter();
+        // 截至目前的完整回复文本，用作音频缓存键
+        private final StringBuilder replyText = new StringBuilder();
+        // 阶段计时起点（nanoTime）
+        private final long sentenceEndAt;
+        private long requestedAt = 0;
+        private boolean deltaSeen = false;
+
+        private boolean started = false;
+        private String errorText = null;
+        private volatile AudioPacer.PacedStream stream;
+        // 被用户打断后不再下发任何内容，也不再负责解锁
+        private volatile boolean interrupted = false;
+        // 逐句合成模式下非空
+        private SentenceSynthesizer synthesizer;
+        // 完整转码的回复音频，finish 时以完整文本为键写入缓存
+        private List<byte[]> transcodedFrames;
+        // 收到音频链接时的文本长度，之后文本又变长则不缓存
+        private int textLengthAtAudio = -1;
+
+        ReplyTurn(WebSocketSession session, String voiceId, Double speedRatio, long sentenceEndAt) {
+            this.session = session;
+            this.id = session.getId();
+            this.voiceId = voiceId;
+            this.speedRatio = speedRatio;
+            this.sentenceEndAt = sentenceEndAt;
+        }
 
-                    // 3. 发送结束标志
-                    if (session.isOpen()) {
-                        session.sendMessage(new TextMessage("{\"type\":\"tts\",\"state\":\"end\"}"));
-                    }
+        /**
+         * 即将请求智能体
+         */
+        void markRequested() {
+            requestedAt = System.nanoTime();
+            turnMetrics.recordSince(TurnMetrics.Stage.QUEUE, sentenceEndAt);
+        }
 
-                    long bufferTime = 0; 
-                    long remainingWait = estimatedPlaybackDuration - timeSpentSending;
-                    if (remainingWait < 0) remainingWait = 0;
-                    long unlockDelay = remainingWait + bufferTime;
+        @Override
+        public void onDelta(String delta) {
+            if (!deltaSeen) {
+                deltaSeen = true;
+                turnMetrics.recordSince(TurnMetrics.Stage.FIRST_DELTA, requestedAt);
+            }
+            replyText.append(delta);
+            for (String sentence : splitter.append(delta)) {
+                sendSentence(sentence);
+            }
+        }
 
-                    log.info("发送完毕。设备预计还需播放 {} ms，将在 {} ms 后解锁输入", remainingWait, unlockDelay);
+        /**
+         * 改为逐句合成：在请求智能体之前调用，连接握手与 LLM 首句生成并行
+         */
+        void useSentenceSynthesis(VoiceProfile profile) {
+            synthesizer = new SentenceSynthesizer(ttsConnectionManager, profile.getTtsConfig(),
+                    properties.getTts(), this::openStream);
+            synthesizer.open();
+        }
 
-                    new Timer().schedule(new TimerTask() {
-                        @Override
-                        public void run() {
-                            setSessionBusy(id, false);
-                            log.info("会话已解锁，准备接收新语音");
-                        }
-                    }, unlockDelay);
+        @Override
+        public void onAudioUrl(String audioUrl) {
+            turnMetrics.recordSince(TurnMetrics.Stage.AUDIO_URL, requestedAt);
+            sendSentence(splitter.flush());
+            if (synthesizer == null) playAudio(audioUrl);
+        }
 
-                } else {
-                    setSessionBusy(id, false);
+        @Override
+        public void onComplete(String audioUrl, String fullText) {
+            String rest = splitter.flush();
+            if (!rest.isEmpty()) sendSentence(rest);
+        }
+
+        @Override
+        public void onError(String message) {
+            errorText = message;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return interrupted;
+        }
+
+        /**
+         * 本轮已收到的回复文本（被打断时为打断前的部分）
+         */
+        String getReplyText() {
+            return replyText.toString().trim();
+        }
+
+        /**
+         * 打断本轮：丢弃未发送的音频，通知设备停止播放，并立即解锁会话
+         * 在 WebSocket 线程上调用，与回复线程并发
+         */
+        void interrupt() {
+            if (interrupted) return;
+            interrupted = true;
+            if (synthesizer != null) synthesizer.cancel();
+            AudioPacer.PacedStream current = stream;
+            if (current != null) current.cancel();
+            try {
+                if (session.isOpen()) {
+                    session.sendMessage(new TextMessage("{\"type\":\"tts\",\"state\":\"stop\"}"));
                 }
             } catch (Exception e) {
-                log.error("处理失败", e);
+                log.error("停止标志下发失败", e);
+            }
+            unlock();
+        }
+
+        private synchronized AudioPacer.PacedStream openStream() {
+            if (stream == null) {
+                AudioPacer.PacedStream opened = audioPacer.open(session);
+                opened.whenFirstSent().thenRun(() -> turnMetrics.recordSince(TurnMetrics.Stage.FIRST_FRAME, sentenceEndAt));
+                opened.whenSent().thenRun(() -> {
+                    // 被打断或断开的不计入，只统计完整播出的回复
+                    if (!opened.isCancelled()) turnMetrics.recordSince(TurnMetrics.Stage.LAST_FRAME, sentenceEndAt);
+                });
+                stream = opened;
+                // 与 interrupt 竞争：打断发生在创建流之前时，这里补一次取消
+                if (interrupted) stream.cancel();
+            }
+            return stream;
+        }
+
+        /**
+         * 发送一句文本：第一句随 tts start 下发，之后的句子用 sentence_start
+         */
+        private void sendSentence(String text) {
+            if (interrupted || (started && text.isEmpty())) return;
+            try {
+                if (!session.isOpen()) return;
+                session.sendMessage(new TextMessage(buildTtsMessage(started ? "sentence_start" : "start", text)));
+                started = true;
+            } catch (Exception e) {
+                log.error("文本下发失败", e);
+            }
+            if (synthesizer != null) synthesizer.speak(text);
+        }
+
+        private void playAudio(String audioUrl) {
+            if (interrupted) return;
+            // 音频是智能体对完整回复合成的，链接总在回复文本之后到达，此时的文本就是完整文本
+            String text = replyText.toString();
+            textLengthAtAudio = text.length();
+            // 相同文本 + 音色 + 语速的回复直接复用编码好的帧，跳过下载和转码
+            List<byte[]> cached = replyAudioCache.get(text, voiceId, speedRatio);
+            if (cached != null) {
+                log.info("回复音频命中缓存: {} 帧, 预估播放时长: {} ms", cached.size(),
+                        (long) cached.size() * AudioConverter.FRAME_DURATION_MS);
+                // 交给节拍器按帧时钟下发，不再占用当前线程 sleep
+                openStream().offerAll(cached);
+                return;
+            }
+
+            // 边下载边转码：每编码出一帧 60ms 就交给节拍器，不等整段 MP3 下载完
+            long begin = System.currentTimeMillis();
+            long openAt = System.nanoTime();
+            try (InputStream mp3Stream = cozeAPI.openAudioStream(audioUrl)) {
+                if (mp3Stream == null) return;
+                long transcodeAt = System.nanoTime();
+                turnMetrics.record(TurnMetrics.Stage.DOWNLOAD, transcodeAt - openAt);
+                AudioPacer.PacedStream target = openStream();
+                List<byte[]> frames = new ArrayList<>();
+                int total = AudioConverter.transcodeMp3ToOpus(new BufferedInputStream(mp3Stream), frame -> {
+                    // 流已取消（打断、会话断开等）时中止下载，不再白白转码
+                    if (target.isCancelled()) throw new CancellationException();
+                    if (frames.isEmpty()) {
+                        log.info("首帧音频就绪，耗时 {} ms", System.currentTimeMillis() - begin);
+                    }
+                    frames.add(frame);
+                    target.offer(frame);
+                });
+                log.info("音频转码完成: {} 帧, 预估播放时长: {} ms, 总耗时 {} ms", total,
+                        (long) total * AudioConverter.FRAME_DURATION_MS, System.currentTimeMillis() - begin);
+                // 只缓存完整转码的音频，中途被取消或断开的不缓存；流结束、文本确定后再写入
+                if (!target.isCancelled()) {
+                    turnMetrics.recordSince(TurnMetrics.Stage.TRANSCODE, transcodeAt);
+                    transcodedFrames = frames;
+                }
+            } catch (CancellationException e) {
+                log.info("音频流已取消，停止下载");
+            } catch (Exception e) {
+                log.error("音频下发失败", e);
+            }
+        }
+
+        /**
+         * 流结束后收尾：音频全部写出后发送结束标志，并在设备按帧时钟播完的时刻解锁会话
+         */
+        void finish() {
+            if (interrupted) return;
+            cacheReplyAudio();
+            if (!session.isOpen()) {
+                if (synthesizer != null) synthesizer.cancel();
+                if (stream != null) stream.cancel();
                 setSessionBusy(id, false);
+                return;
+            }
+
+            if (!started) {
+                sendSentence(errorText != null ? errorText : "");
+            }
+
+            if (synthesizer != null) {
+                // 等最后一句合成完、全部 PCM 编码入队后再收尾
+                synthesizer.finish().thenRun(this::finishPlayback);
+                return;
+            }
+            finishPlayback();
+        }
+
+        /**
+         * 以完整回复文本为键缓存本轮音频；链接之后若还有文本，说明音频和文本对不上，不缓存
+         */
+        private void cacheReplyAudio() {
+            if (transcodedFrames == null) return;
+            if (replyText.length() == textLengthAtAudio) {
+                replyAudioCache.put(replyText.toString(), voiceId, speedRatio, transcodedFrames);
+            } else {
+                log.warn("音频链接之后仍有回复文本，本轮音频不缓存");
             }
-        }).start();
+            transcodedFrames = null;
+        }
+
+        private void finishPlayback() {
+            if (interrupted) return;
+            if (stream == null) {
+                sendEnd();
+                log.info("发送完毕（无音频），将在 {} ms 后解锁输入", NO_AUDIO_UNLOCK_DELAY_MS);
+                audioPacer.schedule(this::unlock, NO_AUDIO_UNLOCK_DELAY_MS);
+                return;
+            }
+
+            stream.finish();
+            stream.whenSent().thenRun(() -> {
+                if (!interrupted) sendEnd();
+            });
+            stream.whenPlaybackEnds().thenAccept(frames -> {
+                if (interrupted) return;
+                log.info("设备播放完毕，共 {} 帧", frames);
+                unlock();
+            });
+        }
+
+        // 3. 发送结束标志
+        private void sendEnd() {
+            try {
+                if (session.isOpen()) {
+                    session.sendMessage(new TextMessage("{\"type\":\"tts\",\"state\":\"end\"}"));
+                }
+            } catch (Exception e) {
+                log.error("结束标志下发失败", e);
+            }
+        }
+
+        /**
+         * 只解锁自己这一轮：被打断后新一轮可能已经开始，不能把新一轮的锁解掉
+         */
+        private void unlock() {
+            if (!activeTurns.remove(id, this)) return;
+            setSessionBusy(id, false);
+            log.info("会话已解锁，准备接收新语音");
+        }
+    }
+
+    /**
+     * 在线的 ESP32 会话数
+     */
+    public int getSessionCount() {
+        return outboundSessions.size();
+    }
+
+    /**
+     * 正在回复（不接收新语音）的会话数
+     */
+    public int getBusySessionCount() {
+        int busy = 0;
+        for (AtomicBoolean state : sessionBusyState.values()) {
+            if (state.get()) busy++;
+        }
+        return busy;
+    }
+
+    private static String accountOf(WebSocketSession session) {
+        if (session.getUri() == null) return null;
+        String account = UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams().getFirst("account");
+        return account == null || account.isEmpty() ? null : account;
+    }
+
+    private static String buildTtsMessage(String state, String text) {
+        String escaped = text.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "");
+        return String.format("{\"type\":\"tts\",\"state\":\"%s\",\"text\":\"%s\"}", state, escaped);
     }
 
     private boolean isSessionBusy(String sessionId) {
@@ -267,11 +598,19 @@ public class WebSocketServer extends AbstractWebSocketHandler {
         AliyunRealtimeASR asr = asrServices.remove(id);
         if (asr != null) asr.stop();
 
-        Timer timer = sessionTimers.remove(id);
-        if (timer != null) timer.cancel();
+        List<HashedWheelTimer.Timeout> timers = sessionTimers.remove(id);
+        if (timers != null) timers.forEach(HashedWheelTimer.Timeout::cancel);
+
+        ReplyTurn turn = activeTurns.remove(id);
+        if (turn != null) {
+            if (turn.synthesizer != null) turn.synthesizer.cancel();
+            if (turn.stream != null) turn.stream.cancel();
+        }
 
         sessionBusyState.remove(id);
-        lastAsrSendTime.remove(id);
+        outboundSessions.remove(id);
+        sessionAccounts.remove(id);
+        turnExecutor.removeSession(id);
     }
 
     @Override
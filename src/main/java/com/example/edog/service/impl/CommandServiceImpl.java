@@ -2,6 +2,7 @@ package com.example.edog.service.impl;
 
 import com.example.edog.entity.Command;
 import com.example.edog.mapper.CommandMapper;
+import com.example.edog.service.CommandCache;
 import com.example.edog.service.CommandService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -13,6 +14,10 @@ public class CommandServiceImpl implements CommandService {
     @Autowired
     private CommandMapper commandMapper;
 
+    // 写库成功后同步更新命令缓存（写穿），不再整表重载
+    @Autowired
+    private CommandCache commandCache;
+
     @Override
     public List<Command> getAllCommandByAccount(String account) {
         return commandMapper.getAllCommandByAccount(account);
@@ -20,24 +25,29 @@ public class CommandServiceImpl implements CommandService {
 
     @Override
     public int addOrUpdateCommand(Command command) {
-        Command existing = commandMapper.findByAccountAndContent(String.valueOf(command.getAccount()), command.getContent());
-        if (existing != null) {
-            // 已存在 → 更新 message
-            return commandMapper.updateMessageByAccountAndContent(
-                    String.valueOf(command.getAccount()), command.getContent(), command.getMessage());
-        } else {
-            // 不存在 → 插入新命令
-            return commandMapper.insertCommand(command);
+        // 单条语句完成：不存在则插入，已存在则更新 message（依赖 (account, content) 唯一索引，并发写也只有一条）
+        int result = commandMapper.upsertCommand(command);
+        if (result > 0) {
+            commandCache.put(String.valueOf(command.getAccount()), command.getContent(), command.getMessage());
         }
+        return result;
     }
 
     @Override
     public int updateMessageByAccountAndContent(String account, String content, String message) {
-        return commandMapper.updateMessageByAccountAndContent(account, content, message);
+        int result = commandMapper.updateMessageByAccountAndContent(account, content, message);
+        if (result > 0) {
+            commandCache.put(account, content, message);
+        }
+        return result;
     }
 
     @Override
     public int deleteByAccountAndContent(String account, String content) {
-        return commandMapper.deleteByAccountAndContent(account, content);
+        int result = commandMapper.deleteByAccountAndContent(account, content);
+        if (result > 0) {
+            commandCache.remove(account, content);
+        }
+        return result;
     }
 }
\ No newline at end of file
@@ -1,34 +1,80 @@
 package com.example.edog.utils;
 
 import com.alibaba.fastjson2.JSONObject;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 public class BaiduAuthService {
     private static final String API_KEY = "sov5I4aEwzZldEDgSyTmvbs6";
     private static final String SECRET_KEY = "EgZj8ypAPXLsDqPC0cyiqfqwN0rjtoGD";
 
+    // 距过期不足此时长就提前刷新（百度 Token 有效期 30 天）
+    private static final long REFRESH_MARGIN_MS = 3600_000L;
+    // 响应里没有 expires_in 时按 1 天缓存
+    private static final long DEFAULT_TTL_MS = 86400_000L;
+
+    private static volatile String cachedToken;
+    private static volatile long expireAt = 0;
+
+    /**
+     * 获取 AccessToken，缓存到过期前，不再每次合成都走一次 HTTPS
+     */
     public static String getAccessToken() throws Exception {
+        String token = cachedToken;
+        if (token != null && System.currentTimeMillis() < expireAt - REFRESH_MARGIN_MS) {
+            return token;
+        }
+        synchronized (BaiduAuthService.class) {
+            if (cachedToken != null && System.currentTimeMillis() < expireAt - REFRESH_MARGIN_MS) {
+                return cachedToken;
+            }
+            fetchAccessToken();
+            return cachedToken;
+        }
+    }
+
+    /**
+     * 作废缓存的 Token（服务端返回鉴权失败时调用），下次调用重新获取
+     * 只作废失败的那个 Token：多条连接同时报错时，已经换上的新 Token 不会被再次作废；不加锁，避免在 WebSocket 回调线程上等正在进行的 HTTPS 获取
+     */
+    public static void invalidate(String failedToken) {
+        if (failedToken != null && failedToken.equals(cachedToken)) {
+            expireAt = 0;
+            System.err.println("百度 AccessToken 鉴权失败，已作废，下次合成时重新获取");
+        }
+    }
+
+    private static void fetchAccessToken() throws Exception {
         String url = "https://aip.baidubce.com/oauth/2.0/token" +
                 "?grant_type=client_credentials" +
                 "&client_id=" + API_KEY +
                 "&client_secret=" + SECRET_KEY;
 
-        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
-        connection.setRequestMethod("POST");
-        connection.setDoOutput(true);
+        Request request = new Request.Builder()
+                .url(url)
+                .post(RequestBody.create(new byte[0]))
+                .build();
 
-        BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-        StringBuilder response = new StringBuilder();
-        String line;
-        while ((line = in.readLine()) != null) {
-            response.append(line);
+        // 走全局共享的 HTTP 客户端
+        OkHttpClient client = SpringContextUtil.getBean(OkHttpClient.class);
+        try (Response response = client.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                throw new IllegalStateException("百度鉴权失败: HTTP " + response.code());
+            }
+            JSONObject json = JSONObject.parseObject(body.string());
+            String token = json.getString("access_token");
+            if (token == null || token.isEmpty()) {
+                throw new IllegalStateException("百度鉴权失败: " + json);
+            }
+            Long expiresIn = json.getLong("expires_in");
+            long ttl = expiresIn != null && expiresIn > 0 ? expiresIn * 1000 : DEFAULT_TTL_MS;
+            cachedToken = token;
+            expireAt = System.currentTimeMillis() + ttl;
+            System.out.println("百度 AccessToken 已刷新，有效期 " + ttl / 1000 + " 秒");
         }
-        in.close();
-
-        JSONObject json = JSONObject.parseObject(response.toString());
-        return json.getString("access_token");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,152 @@
+package com.example.edog.utils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 账号命令的拼音索引（只读快照）
+ * 构建时把每条命令内容转成拼音、再拆成字母二元组并哈希进一个 1024 位的位图；
+ * 匹配时只需对识别文本做一次同样的转换，然后逐条做位运算求 Dice 系数，几条到几十条命令只要几微秒
+ *
+ * 用拼音而不是汉字比较，同音字识别错误（"钱进"/"前进"）不影响命中；
+ * Dice 系数会惩罚长度差异，长句里顺带提到命令词不会被误判为命令
+ */
+public class CommandIndex {
+
+    private static final int BITS = 1024;
+    private static final int WORDS = BITS / 64;
+
+    public static final CommandIndex EMPTY = new CommandIndex(List.of());
+
+    private final String[] contents;
+    private final String[] messages;
+    private final long[][] bigramBits;
+    private final int[] bigramCounts;
+    // 拼音完全相同时直接命中
+    private final Map<String, Integer> exact = new HashMap<>();
+
+    /**
+     * @param commands content-message 二维数组
+     */
+    public CommandIndex(List<String[]> commands) {
+        int n = commands.size();
+        this.contents = new String[n];
+        this.messages = new String[n];
+        this.bigramBits = new long[n][];
+        this.bigramCounts = new int[n];
+        for (int i = 0; i < n; i++) {
+            String[] cmd = commands.get(i);
+            contents[i] = cmd[0];
+            messages[i] = cmd[1];
+            String key = normalize(cmd[0]);
+            bigramBits[i] = new long[WORDS];
+            bigramCounts[i] = fill(key, bigramBits[i]);
+            exact.putIfAbsent(key, i);
+        }
+    }
+
+    public int size() {
+        return contents.length;
+    }
+
+    /**
+     * 匹配识别文本
+     * @param threshold 最低 Dice 系数
+     * @param minMargin 最高分需领先第二名的分差，避免在两条相近命令间误判
+     * @return 置信匹配，没有则返回 null
+     */
+    public Match match(String text, double threshold, double minMargin) {
+        if (contents.length == 0 || text == null) return null;
+        String key = normalize(text);
+        if (key.isEmpty()) return null;
+
+        Integer hit = exact.get(key);
+        if (hit != null) return new Match(contents[hit], messages[hit], 1.0);
+
+        long[] query = new long[WORDS];
+        int queryCount = fill(key, query);
+        if (queryCount == 0) return null;
+
+        int best = -1;
+        double bestScore = 0, secondScore = 0;
+        for (int i = 0; i < contents.length; i++) {
+            int common = 0;
+            long[] bits = bigramBits[i];
+            for (int w = 0; w < WORDS; w++) {
+                common += Long.bitCount(bits[w] & query[w]);
+            }
+            double score = 2.0 * common / (bigramCounts[i] + queryCount);
+            if (score > bestScore) {
+                secondScore = bestScore;
+                bestScore = score;
+                best = i;
+            } else if (score > secondScore) {
+                secondScore = score;
+            }
+        }
+        if (best < 0 || bestScore < threshold || bestScore - secondScore < minMargin) return null;
+        return new Match(contents[best], messages[best], bestScore);
+    }
+
+    /**
+     * 转拼音并去掉标点、空白（识别结果通常带句号）
+     */
+    private static String normalize(String text) {
+        String pinyin = PinyinUtils.toPinyin(text);
+        StringBuilder sb = new StringBuilder(pinyin.length());
+        for (int i = 0; i < pinyin.length(); i++) {
+            char c = pinyin.charAt(i);
+            if (Character.isLetterOrDigit(c)) sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 把二元组哈希进位图
+     * @return 置位数（去重后的二元组数）
+     */
+    private static int fill(String key, long[] bits) {
+        if (key.length() == 1) {
+            setBit(bits, key.charAt(0) & (BITS - 1));
+        }
+        for (int i = 0; i + 1 < key.length(); i++) {
+            int h = (key.charAt(i) * 31 + key.charAt(i + 1)) & (BITS - 1);
+            setBit(bits, h);
+        }
+        int count = 0;
+        for (long w : bits) count += Long.bitCount(w);
+        return count;
+    }
+
+    private static void setBit(long[] bits, int h) {
+        bits[h >>> 6] |= 1L << (h & 63);
+    }
+
+    /**
+     * 匹配结果
+     */
+    public static final class Match {
+        private final String content;
+        private final String message;
+        private final double score;
+
+        Match(String content, String message, double score) {
+            this.content = content;
+            this.message = message;
+            this.score = score;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+}
@@ -2,194 +2,300 @@ package com.example.edog.utils;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.springframework.http.*;
-import org.springframework.http.converter.StringHttpMessageConverter;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 @Component
 public class CozeAPI {
 
+    private static final Logger log = LoggerFactory.getLogger(CozeAPI.class);
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    // 共享连接池的 HTTP 客户端，Coze 接口和音频 CDN 的连接跨轮次复用
+    private final OkHttpClient httpClient;
+
+    public CozeAPI(OkHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
     // 请确保 Token 和 BotID 正确
     private static final String COZE_API_TOKEN = "sat_LeDY8iu23Ifcb2UwY7LXfZeL0HhoF4NTswQmlooFVJyRJNd7ExEk9gFogjnRPbPl";
     private static final String BOT_ID = "7534905232841785370";
 
+    private static final String CHAT_URL = "https://api.coze.cn/v3/chat";
+
+    // 可由 kouzi.agent.* 覆盖（压测时指向本地假服务），不在 Spring 里使用时取上面的默认值
+    @Value("${kouzi.agent.base-url:" + CHAT_URL + "}")
+    private String chatUrl = CHAT_URL;
+    @Value("${kouzi.agent.token:" + COZE_API_TOKEN + "}")
+    private String apiToken = COZE_API_TOKEN;
+    @Value("${kouzi.agent.bot-id:" + BOT_ID + "}")
+    private String botId = BOT_ID;
+
     /**
      * 调用 Coze 接口
+     * 流式模式下内部走 CozeStreamRequest，等整轮回复结束后一次性返回
      */
     public String[] CozeRequest(String question, String voiceId, Double speedRatio, boolean stream) {
-        
-        try {
-            RestTemplate restTemplate = createUtf8RestTemplate();
-            String url = "https://api.coze.cn/v3/chat";
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setBearerAuth(COZE_API_TOKEN);
-
-            ObjectMapper mapper = new ObjectMapper();
-
-            // 1. 构造输入参数对象 (对应 JSON 结构)
-            Map<String, Object> inputPayload = new HashMap<>();
-            inputPayload.put("input", question); 
-            inputPayload.put("voice_id", (voiceId != null && !voiceId.isEmpty()) ? voiceId : "7568423452617523254");
-            inputPayload.put("speed_ratio", speedRatio != null ? speedRatio : 1.0);
-
-            // 2. 将参数对象转为 JSON 字符串
-            String contentJsonString = mapper.writeValueAsString(inputPayload);
-            System.out.println("[CozeAPI] 发送 Content: " + contentJsonString);
-
-            // 3. 构造请求体
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("bot_id", BOT_ID);
-            requestBody.put("user_id", "user_123");
-            requestBody.put("stream", stream);
-            requestBody.put("auto_save_history", true);
-
-            List<Map<String, Object>> additional_messages = new ArrayList<>();
-            Map<String, Object> userMessage = new HashMap<>();
-            userMessage.put("role", "user");
-            userMessage.put("content", contentJsonString); 
-            userMessage.put("content_type", "text");
-            additional_messages.add(userMessage);
-            
-            requestBody.put("additional_messages", additional_messages);
-
-            // 序列化整个请求体
-            String finalRequestBodyJson = mapper.writeValueAsString(requestBody);
-            HttpEntity<String> requestEntity = new HttpEntity<>(finalRequestBodyJson, headers);
-
-            // 发送请求
-            ResponseEntity<String> response = restTemplate.exchange(
-                    url, HttpMethod.POST, requestEntity, String.class);
+        if (stream) {
+            String[][] holder = { { "", "" } };
+            CozeStreamRequest(question, voiceId, speedRatio, new CozeStreamListener() {
+                @Override
+                public void onDelta(String delta) {
+                }
 
-            String responseBody = response.getBody();
+                @Override
+                public void onComplete(String audioUrl, String fullText) {
+                    holder[0] = new String[]{ audioUrl, fullText };
+                }
 
-            if (response.getStatusCode() == HttpStatus.OK) {
-                // 简单检查业务错误码
-                if (responseBody != null && responseBody.contains("\"code\":") && !responseBody.contains("\"code\":0")) {
-                    System.err.println("[CozeAPI] 业务报错: " + responseBody);
-                    return new String[]{"", "Bot配置错误或参数解析失败"};
+                @Override
+                public void onError(String message) {
+                    holder[0] = new String[]{ "", message };
                 }
+            });
+            return holder[0];
+        }
 
-                if (stream) {
-                    return processStreamResponse(responseBody);
-                } else {
+        try {
+            Request request = chatRequest(buildRequestBody(question, voiceId, speedRatio, false), false);
+
+            // 发送请求
+            try (Response response = httpClient.newCall(request).execute()) {
+                ResponseBody body = response.body();
+                String responseBody = body != null ? body.string() : "";
+
+                if (response.code() == 200) {
+                    // 简单检查业务错误码
+                    if (isBusinessError(responseBody)) {
+                        log.warn("Coze 业务报错: {}", responseBody);
+                        return new String[]{"", "Bot配置错误或参数解析失败"};
+                    }
                     return processNonStreamResponse(responseBody);
+                } else {
+                    log.warn("Coze HTTP 请求失败: {}", response.code());
+                    return new String[]{ "", "请求失败" };
                 }
-            } else {
-                System.err.println("[CozeAPI] HTTP 请求失败: " + response.getStatusCode());
-                return new String[]{ "", "请求失败" };
             }
 
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Coze 请求异常", e);
             return new String[]{ "", "系统异常" };
         }
     }
 
-    private RestTemplate createUtf8RestTemplate() {
-        RestTemplate restTemplate = new RestTemplate();
-        restTemplate.getMessageConverters().removeIf(converter ->
-                converter instanceof StringHttpMessageConverter);
-        restTemplate.getMessageConverters().add(0,
-                new StringHttpMessageConverter(StandardCharsets.UTF_8));
-        return restTemplate;
+    /**
+     * 流式调用 Coze 接口
+     * 边读 SSE 边解析，每收到一个 conversation.message.delta 就回调一次，不再把整包响应读进内存
+     * 调用线程阻塞到流结束，所有回调都在调用线程上执行
+     */
+    public void CozeStreamRequest(String question, String voiceId, Double speedRatio, CozeStreamListener listener) {
+        try {
+            Request request = chatRequest(buildRequestBody(question, voiceId, speedRatio, true), true);
+
+            try (Response response = httpClient.newCall(request).execute()) {
+                ResponseBody body = response.body();
+                if (response.code() != 200 || body == null) {
+                    log.warn("Coze HTTP 请求失败: {}", response.code());
+                    listener.onError("请求失败");
+                    return;
+                }
+                SseParser parser = new SseParser(listener);
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(body.byteStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!parser.accept(line)) {
+                            return;
+                        }
+                        if (listener.isCancelled()) {
+                            log.debug("回复已取消，停止读取");
+                            return;
+                        }
+                    }
+                }
+                String finalContent = parser.text.toString().trim();
+                log.debug("最终解析文本: {}", finalContent);
+                listener.onComplete(parser.audioUrl, finalContent);
+            }
+        } catch (Exception e) {
+            log.error("Coze 流式请求异常", e);
+            listener.onError("系统异常");
+        }
+    }
+
+    private Request chatRequest(String json, boolean stream) {
+        return new Request.Builder()
+                .url(chatUrl)
+                .header("Authorization", "Bearer " + apiToken)
+                .header("Accept", stream ? "text/event-stream" : "application/json")
+                .post(RequestBody.create(json, JSON))
+                .build();
     }
 
     /**
-     * 处理流式响应（SSE格式）
-     * 🔥 核心修复：正确解析 SSE 协议的 event 行，过滤 completed 事件防止重复
+     * 构造 /v3/chat 请求体
+     */
+    private String buildRequestBody(String question, String voiceId, Double speedRatio, boolean stream) throws IOException {
+        ObjectMapper mapper = OBJECT_MAPPER;
+
+        // 1. 构造输入参数对象 (对应 JSON 结构)
+        Map<String, Object> inputPayload = new HashMap<>();
+        inputPayload.put("input", question);
+        inputPayload.put("voice_id", (voiceId != null && !voiceId.isEmpty()) ? voiceId : "7568423452617523254");
+        inputPayload.put("speed_ratio", speedRatio != null ? speedRatio : 1.0);
+
+        // 2. 将参数对象转为 JSON 字符串
+        String contentJsonString = mapper.writeValueAsString(inputPayload);
+        log.debug("发送 Content: {}", contentJsonString);
+
+        // 3. 构造请求体
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("bot_id", botId);
+        requestBody.put("user_id", "user_123");
+        requestBody.put("stream", stream);
+        requestBody.put("auto_save_history", true);
+
+        List<Map<String, Object>> additional_messages = new ArrayList<>();
+        Map<String, Object> userMessage = new HashMap<>();
+        userMessage.put("role", "user");
+        userMessage.put("content", contentJsonString);
+        userMessage.put("content_type", "text");
+        additional_messages.add(userMessage);
+
+        requestBody.put("additional_messages", additional_messages);
+
+        // 序列化整个请求体
+        return mapper.writeValueAsString(requestBody);
+    }
+
+    private static boolean isBusinessError(String body) {
+        return body != null && body.contains("\"code\":") && !body.contains("\"code\":0");
+    }
+
+    /**
+     * 处理已完整缓冲的流式响应（SSE格式）
      */
-    private String[] processStreamResponse(String streamData) {
+    String[] processStreamResponse(String streamData) {
         if (streamData == null || streamData.isEmpty()) {
             return new String[]{ "", "" };
         }
 
-        StringBuilder result = new StringBuilder();
-        String audio_url = "";
-        String[] lines = streamData.split("\n");
-        ObjectMapper objectMapper = new ObjectMapper();
-        
+        SseParser parser = new SseParser(null);
+        for (String line : streamData.split("\n")) {
+            parser.accept(line);
+        }
+
+        String finalContent = parser.text.toString().trim();
+        log.debug("最终解析文本: {}", finalContent);
+        return new String[]{ parser.audioUrl, finalContent };
+    }
+
+    /**
+     * 逐行 SSE 解析器
+     * 🔥 核心修复：正确解析 SSE 协议的 event 行，过滤 completed 事件防止重复
+     */
+    private static class SseParser {
+        private final CozeStreamListener listener;
+        private final StringBuilder text = new StringBuilder();
+        private String audioUrl = "";
+
         // 状态机变量：记录当前正在处理的事件类型
-        String currentEvent = "";
+        private String currentEvent = "";
 
-        for (String line : lines) {
+        SseParser(CozeStreamListener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * 处理一行数据
+         * @return false 表示遇到业务错误，应停止读取
+         */
+        boolean accept(String line) {
             line = line.trim(); // 去除回车符等空白
-            
+
+            // 0. 非 SSE 的 JSON 响应，说明请求被业务拒绝
+            if (line.startsWith("{") && isBusinessError(line)) {
+                log.warn("Coze 业务报错: {}", line);
+                if (listener != null) listener.onError("Bot配置错误或参数解析失败");
+                return false;
+            }
+
             // 1. 捕获 event 行
             if (line.startsWith("event:")) {
                 currentEvent = line.substring(6).trim();
-                continue;
+                return true;
             }
-            
+
             // 2. 处理 data 行
-            if (line.startsWith("data:")) {
-                String data = line.substring(5).trim();
-                
-                if (data.equals("[DONE]") || data.isEmpty()) continue;
-
-                // 🔥 核心逻辑：如果当前事件是 'completed' (全量消息)，直接忽略
-                // 因为我们已经通过 'delta' (增量消息) 拼接出了完整内容
-                // 如果不忽略，内容就会重复一遍
-                if ("conversation.message.completed".equals(currentEvent) || 
-                    "conversation.chat.completed".equals(currentEvent)) {
-                    continue;
-                }
+            if (!line.startsWith("data:")) {
+                return true;
+            }
+            String data = line.substring(5).trim();
 
-                try {
-                    JsonNode jsonNode = objectMapper.readTree(data);
-
-                    // 1. 尝试从 message 结构解析 (标准 V3)
-                    if (jsonNode.has("message")) {
-                        JsonNode msg = jsonNode.get("message");
-                        if (msg.has("content") && "assistant".equals(msg.path("role").asText()) && "answer".equals(msg.path("type").asText())) {
-                            String content = msg.get("content").asText();
-                            // 检查是否为音频链接
-                            if (content.startsWith("https://") && (content.contains(".mp3") || content.contains(".wav"))) {
-                                if (audio_url.isEmpty()) { // 防止 URL 重复赋值
-                                    audio_url = content;
-                                    System.out.println("[CozeAPI] 解析到音频URL: " + audio_url);
-                                }
-                            } else {
-                                result.append(content);
-                            }
-                        }
+            if (data.equals("[DONE]") || data.isEmpty()) return true;
+
+            // 🔥 核心逻辑：如果当前事件是 'completed' (全量消息)，直接忽略
+            // 因为我们已经通过 'delta' (增量消息) 拼接出了完整内容
+            // 如果不忽略，内容就会重复一遍
+            if ("conversation.message.completed".equals(currentEvent) ||
+                "conversation.chat.completed".equals(currentEvent)) {
+                return true;
+            }
+
+            try {
+                JsonNode jsonNode = OBJECT_MAPPER.readTree(data);
+
+                // 1. 尝试从 message 结构解析 (标准 V3)
+                if (jsonNode.has("message")) {
+                    JsonNode msg = jsonNode.get("message");
+                    if (msg.has("content") && "assistant".equals(msg.path("role").asText()) && "answer".equals(msg.path("type").asText())) {
+                        handleContent(msg.get("content").asText());
                     }
-                    // 2. 兼容旧版结构 (Content 直接在根节点)
-                    else if (jsonNode.has("content")) {
-                        // 额外检查：确保是 answer 类型
-                        String type = jsonNode.path("type").asText("answer");
-                        if ("answer".equals(type)) {
-                            String content = jsonNode.get("content").asText();
-                            if (content.startsWith("https://") && (content.contains(".mp3") || content.contains(".wav"))) {
-                                if (audio_url.isEmpty()) {
-                                    audio_url = content;
-                                    System.out.println("[CozeAPI] 解析到音频URL: " + audio_url);
-                                }
-                            } else {
-                                result.append(content);
-                            }
-                        }
+                }
+                // 2. 兼容旧版结构 (Content 直接在根节点)
+                else if (jsonNode.has("content")) {
+                    // 额外检查：确保是 answer 类型
+                    String type = jsonNode.path("type").asText("answer");
+                    if ("answer".equals(type)) {
+                        handleContent(jsonNode.get("content").asText());
                     }
+                }
+
+            } catch (Exception e) {
+                // 忽略解析错误 (可能是心跳包等非 JSON 数据)
+            }
+            return true;
+        }
 
-                } catch (Exception e) {
-                    // 忽略解析错误 (可能是心跳包等非 JSON 数据)
+        private void handleContent(String content) {
+            // 检查是否为音频链接
+            if ((content.startsWith("https://") || content.startsWith("http://"))
+                    && (content.contains(".mp3") || content.contains(".wav"))) {
+                if (audioUrl.isEmpty()) { // 防止 URL 重复赋值
+                    audioUrl = content;
+                    log.debug("解析到音频URL: {}", audioUrl);
+                    if (listener != null) listener.onAudioUrl(audioUrl);
                 }
+            } else if (!content.isEmpty()) {
+                text.append(content);
+                if (listener != null) listener.onDelta(content);
             }
         }
-        
-        String finalContent = result.toString().trim();
-        System.out.println("[CozeAPI] 最终解析文本: " + finalContent);
-        return new String[]{ audio_url, finalContent };
     }
 
     /**
@@ -197,8 +303,7 @@ public class CozeAPI {
      */
     private String[] processNonStreamResponse(String jsonBody) {
         try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            JsonNode root = objectMapper.readTree(jsonBody);
+            JsonNode root = OBJECT_MAPPER.readTree(jsonBody);
             
             StringBuilder text = new StringBuilder();
             String audio_url = "";
@@ -218,50 +323,58 @@ public class CozeAPI {
 
             return new String[]{ audio_url, text.toString() };
         } catch (Exception e) {
-            System.err.println("[CozeAPI] 非流式解析失败: " + e.getMessage());
+            log.warn("非流式解析失败: {}", e.getMessage());
             return new String[]{ "", "" };
         }
     }
 
-    public String downloadAudio(String audioUrl, String saveDir) {
+    /**
+     * 以流的方式打开音频 URL，响应头到达即返回，正文边下载边读取
+     * 调用方负责关闭返回的流（关闭即释放连接）
+     * @return 音频流，失败返回 null
+     */
+    public InputStream openAudioStream(String audioUrl) {
         if (audioUrl == null || audioUrl.isEmpty()) {
             return null;
         }
 
+        Request request = new Request.Builder().url(audioUrl).get().build();
+        Response response = null;
         try {
-            File dir = new File(saveDir);
-            if (!dir.exists()) dir.mkdirs();
-
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-            String fileName = "coze_audio_" + timestamp + ".mp3";
-            File outputFile = new File(dir, fileName);
-
-            URL url = new URL(audioUrl);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setConnectTimeout(10000);
-            connection.setReadTimeout(30000);
-
-            if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-                try (InputStream inputStream = connection.getInputStream();
-                     FileOutputStream outputStream = new FileOutputStream(outputFile)) {
-                    
-                    byte[] buffer = new byte[4096];
-                    int bytesRead;
-                    while ((bytesRead = inputStream.read(buffer)) != -1) {
-                        outputStream.write(buffer, 0, bytesRead);
-                    }
-                    System.out.println("[CozeAPI] 音频下载完成: " + outputFile.getAbsolutePath());
-                    return outputFile.getAbsolutePath();
-                }
+            response = httpClient.newCall(request).execute();
+            ResponseBody body = response.body();
+            if (response.code() == 200 && body != null) {
+                return body.byteStream();
             }
+            log.warn("打开音频流失败: HTTP {}", response.code());
         } catch (Exception e) {
-            System.err.println("[CozeAPI] 下载音频失败: " + e.getMessage());
+            log.warn("打开音频流失败: {}", e.getMessage());
         }
+        if (response != null) response.close();
         return null;
     }
-    
+
+    /**
+     * 下载音频到内存，不再写入 coze_audio 目录
+     * @return MP3 字节数据，失败返回 null
+     */
     public byte[] downloadAudioBytes(String audioUrl) {
-        return null; 
+        if (audioUrl == null || audioUrl.isEmpty()) {
+            return null;
+        }
+
+        Request request = new Request.Builder().url(audioUrl).get().build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            if (response.code() == 200 && body != null) {
+                byte[] data = body.bytes();
+                log.debug("音频下载完成: {} bytes", data.length);
+                return data;
+            }
+            log.warn("下载音频失败: HTTP {}", response.code());
+        } catch (Exception e) {
+            log.warn("下载音频失败: {}", e.getMessage());
+        }
+        return null;
     }
 }
\ No newline at end of file
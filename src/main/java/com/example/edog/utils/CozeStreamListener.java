@@ -0,0 +1,39 @@
+package com.example.edog.utils;
+
+/**
+ * Coze 流式回复回调
+ * 所有回调都在发起请求的线程上按 SSE 事件到达顺序执行
+ */
+public interface CozeStreamListener {
+
+    /**
+     * 收到一段增量回复文本（conversation.message.delta）
+     */
+    void onDelta(String delta);
+
+    /**
+     * 解析到音频链接，每轮回复最多回调一次
+     */
+    default void onAudioUrl(String audioUrl) {
+    }
+
+    /**
+     * 流正常结束
+     * @param audioUrl 音频链接，没有时为空串
+     * @param fullText 拼接后的完整文本
+     */
+    void onComplete(String audioUrl, String fullText);
+
+    /**
+     * 请求失败
+     * @param message 可直接播报给用户的提示文本
+     */
+    void onError(String message);
+
+    /**
+     * 返回 true 时停止读取剩余的流（例如回复已被用户打断），不再回调 onComplete
+     */
+    default boolean isCancelled() {
+        return false;
+    }
+}
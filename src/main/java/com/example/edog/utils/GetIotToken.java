@@ -9,18 +9,60 @@ import com.huaweicloud.sdk.iam.v3.region.IamRegion;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * 华为云 IAM Token（IoTDA 下发用）
+ * 读取不加锁，只有刷新串行；Token 有效期 24 小时，由 IotDispatcher 的后台线程在过期前主动刷新
+ */
 public class GetIotToken {
 
-    private static String cachedToken = null;
+    // IAM Token 有效期 24 小时
+    private static final long TOKEN_TTL_MS = 24 * 3600_000L;
 
-    public static synchronized String getToken() {
-        if (cachedToken == null) {
-            refreshToken();
+    private static volatile String cachedToken = null;
+    private static volatile long expireAt = 0;
+    private static final Object refreshLock = new Object();
+
+    /**
+     * 获取缓存的 Token，只有从未获取成功时才在当前线程登录
+     */
+    public static String getToken() {
+        String token = cachedToken;
+        if (token != null) {
+            return token;
+        }
+        synchronized (refreshLock) {
+            if (cachedToken == null) {
+                doRefresh();
+            }
+            return cachedToken;
+        }
+    }
+
+    /**
+     * Token 过期时间戳（毫秒），尚未获取时为 0
+     */
+    public static long getExpireAt() {
+        return expireAt;
+    }
+
+    public static void refreshToken() {
+        synchronized (refreshLock) {
+            doRefresh();
+        }
+    }
+
+    /**
+     * 发送方因鉴权失败要求刷新：failedToken 仍是当前 Token 才刷新，多个发送线程同时失败只登录一次
+     */
+    public static void refreshIfCurrent(String failedToken) {
+        synchronized (refreshLock) {
+            if (cachedToken == null || cachedToken.equals(failedToken)) {
+                doRefresh();
+            }
         }
-        return cachedToken;
     }
 
-    public static synchronized void refreshToken() {
+    private static void doRefresh() {
         try {
             System.out.println("[GetIotToken] Refreshing token...");
             // String ak = System.getenv("CLOUD_SDK_AK");
@@ -72,12 +114,18 @@ public class GetIotToken {
                     client.keystoneCreateUserTokenByPassword(request);
 
             // ✅ 真正的 token 在 Header 里
-            cachedToken = response.getXSubjectToken();
+            String token = response.getXSubjectToken();
+            if (token == null || token.isEmpty()) {
+                throw new IllegalStateException("IAM 响应中没有 X-Subject-Token");
+            }
+            cachedToken = token;
+            expireAt = System.currentTimeMillis() + TOKEN_TTL_MS;
             System.out.println("[GetIotToken] Token refreshed successfully.");
         } catch (Exception e) {
+            // 刷新失败时保留旧 Token，未过期前仍可使用
             System.err.println("[GetIotToken] Failed to refresh token: " + e.getMessage());
             e.printStackTrace();
-            cachedToken = null; // Ensure it's null if failed
+            if (System.currentTimeMillis() >= expireAt) cachedToken = null;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,202 @@
+package com.example.edog.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 时间轮定时器
+ * 单线程按固定 tick 转动，每个 tick 只处理当前槽位里的任务，新增/取消都是 O(1)，
+ * 适合大量会话的心跳、保活这类精度要求在百毫秒级的周期任务
+ *
+ * 任务直接在 tick 线程上执行，必须足够轻（不能阻塞），否则会拖慢整个时间轮，
+ * 可通过 edog.timer.tick.lag / edog.timer.pending 指标观察（见 MetricsConfig）
+ */
+public class HashedWheelTimer {
+
+    private static final Logger log = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+    private final long tickNanos;
+    private final int mask;
+    private final List<Timeout>[] wheel;
+    private final ConcurrentLinkedQueue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final ScheduledExecutorService ticker;
+    private final long startNanos;
+
+    // 只在 tick 线程上读写
+    private long tick = 0;
+
+    private volatile long lastTickLagNanos = 0;
+    private volatile long maxTickLagNanos = 0;
+
+    /**
+     * @param tickMs 每个 tick 的时长
+     * @param wheelSize 槽位数，会向上取整到 2 的幂
+     */
+    @SuppressWarnings("unchecked")
+    public HashedWheelTimer(String name, long tickMs, int wheelSize) {
+        int slots = Integer.highestOneBit(Math.max(2, wheelSize) - 1) << 1;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMs));
+        this.mask = slots - 1;
+        this.wheel = new List[slots];
+        for (int i = 0; i < slots; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        });
+        this.startNanos = System.nanoTime();
+        ticker.scheduleAtFixedRate(this::onTick, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 延迟执行一次
+     */
+    public Timeout schedule(Runnable task, long delayMs) {
+        return add(task, delayMs, 0);
+    }
+
+    /**
+     * 固定频率周期执行，直到被取消
+     */
+    public Timeout scheduleAtFixedRate(Runnable task, long initialDelayMs, long periodMs) {
+        return add(task, initialDelayMs, Math.max(1, toTicks(periodMs)));
+    }
+
+    /**
+     * 最近一次 tick 相对理论时刻的延迟（毫秒）
+     */
+    public double getTickLagMillis() {
+        return lastTickLagNanos / 1_000_000.0;
+    }
+
+    /**
+     * 启动以来观测到的最大 tick 延迟（毫秒）
+     */
+    public double getMaxTickLagMillis() {
+        return maxTickLagNanos / 1_000_000.0;
+    }
+
+    /**
+     * 当前挂在时间轮上的任务数（含已取消但尚未清理的）
+     */
+    public int getPendingTimeouts() {
+        return size.get();
+    }
+
+    public void stop() {
+        ticker.shutdownNow();
+    }
+
+    private Timeout add(Runnable task, long delayMs, long periodTicks) {
+        long elapsed = System.nanoTime() - startNanos;
+        long deadlineTick = (elapsed + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMs)) + tickNanos - 1) / tickNanos;
+        Timeout timeout = new Timeout(task, deadlineTick, periodTicks);
+        size.incrementAndGet();
+        pending.add(timeout);
+        return timeout;
+    }
+
+    private long toTicks(long ms) {
+        return (TimeUnit.MILLISECONDS.toNanos(ms) + tickNanos - 1) / tickNanos;
+    }
+
+    private void onTick() {
+        tick++;
+        long lag = System.nanoTime() - startNanos - tick * tickNanos;
+        lastTickLagNanos = Math.max(0, lag);
+        if (lag > maxTickLagNanos) maxTickLagNanos = lag;
+
+        // 1. 只处理当前槽位
+        List<Timeout> bucket = wheel[(int) (tick & mask)];
+        List<Timeout> rescheduled = null;
+        Iterator<Timeout> it = bucket.iterator();
+        while (it.hasNext()) {
+            Timeout timeout = it.next();
+            if (timeout.cancelled) {
+                it.remove();
+                size.decrementAndGet();
+                continue;
+            }
+            if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+                continue;
+            }
+            it.remove();
+            try {
+                timeout.task.run();
+            } catch (Throwable t) {
+                log.error("时间轮任务执行异常", t);
+            }
+            if (timeout.periodTicks > 0 && !timeout.cancelled) {
+                if (rescheduled == null) rescheduled = new ArrayList<>();
+                rescheduled.add(timeout);
+            } else {
+                size.decrementAndGet();
+            }
+        }
+
+        // 2. 周期任务放回时间轮
+        if (rescheduled != null) {
+            for (Timeout timeout : rescheduled) {
+                place(timeout, tick + timeout.periodTicks);
+            }
+        }
+
+        // 3. 新提交的任务放入对应槽位
+        // 放在处理当前槽位之后：到期时刻恰好是整圈之后的任务落在当前槽位，若先放入会在本 tick 被提前执行
+        Timeout added;
+        while ((added = pending.poll()) != null) {
+            place(added, added.deadlineTick);
+        }
+    }
+
+    /**
+     * 当前槽位已处理完后调用，已到期的任务放到下一个 tick
+     */
+    private void place(Timeout timeout, long deadlineTick) {
+        long target = Math.max(deadlineTick, tick + 1);
+        // 到期前该槽位还会被经过几次（不含本 tick，也不含到期那次）
+        timeout.remainingRounds = (target - tick - 1) / wheel.length;
+        wheel[(int) (target & mask)].add(timeout);
+    }
+
+    /**
+     * 定时任务句柄
+     */
+    public static final class Timeout {
+        private final Runnable task;
+        private final long deadlineTick;
+        private final long periodTicks;
+        private long remainingRounds;
+        private volatile boolean cancelled = false;
+
+        private Timeout(Runnable task, long deadlineTick, long periodTicks) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+            this.periodTicks = periodTicks;
+        }
+
+        /**
+         * 取消任务，O(1)，槽位中的节点在下次转到时清理
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package com.example.edog.utils;
 
-import org.springframework.http.*;
-import org.springframework.web.client.RestTemplate;
+import com.alibaba.fastjson2.JSONObject;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
 
 public class IotHttpSender {
 
@@ -15,47 +19,83 @@ public class IotHttpSender {
     private static final String PROJECT_ID =
             "1b4fbda3bbc2472f9c497507034f79f2";
 
-    private static final String DEVICE_ID =
+    public static final String DEVICE_ID =
             "692bdc8d46c60374e3f8eadc_myedog";
 
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
     /**
      * 通过 x-auth-token 方式发送消息（等价 ArkTS）
+     * 走全局共享的 HTTP 客户端，连续下发时复用到 IoTDA 的连接
      */
     public static String sendMessage(String token, String message) {
+        return sendMessage(token, DEVICE_ID, message);
+    }
+
+    /**
+     * 向指定设备下发消息
+     * @throws SendException IoTDA 返回非 201 或请求异常
+     */
+    public static String sendMessage(String token, String deviceId, String message) {
 
         // URL
         String url = ENDPOINT + "/v5/iot/" + PROJECT_ID +
-                "/devices/" + DEVICE_ID + "/messages";
-
-        // Header（完全等价 ArkTS）
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.set("x-auth-token", token);
+                "/devices/" + deviceId + "/messages";
 
         // Body（完全等价 encoding: none）
-        Map<String, Object> body = new HashMap<>();
+        JSONObject body = new JSONObject();
         body.put("message", message);
         body.put("encoding", "none");
 
-        HttpEntity<Map<String, Object>> request =
-                new HttpEntity<>(body, headers);
+        // Header（完全等价 ArkTS）
+        Request request = new Request.Builder()
+                .url(url)
+                .header("x-auth-token", token)
+                .post(RequestBody.create(body.toJSONString(), JSON))
+                .build();
 
         // 发送
-        RestTemplate restTemplate = new RestTemplate();
-        ResponseEntity<String> response = restTemplate.exchange(
-                url,
-                HttpMethod.POST,
-                request,
-                String.class
-        );
-
-        // IoTDA 成功返回码：201
-        if (response.getStatusCode() == HttpStatus.CREATED) {
-            return response.getBody();
-        } else {
-            throw new RuntimeException(
-                "IoTDA 发送失败: " + response.getStatusCode() + " - " + response.getBody()
-            );
+        OkHttpClient client = SpringContextUtil.getBean(OkHttpClient.class);
+        try (Response response = client.newCall(request).execute()) {
+            ResponseBody responseBody = response.body();
+            String text = responseBody != null ? responseBody.string() : "";
+
+            // IoTDA 成功返回码：201
+            if (response.code() == 201) {
+                return text;
+            } else {
+                throw new SendException(response.code(),
+                    "IoTDA 发送失败: " + response.code() + " - " + text
+                );
+            }
+        } catch (IOException e) {
+            throw new SendException(0, "IoTDA 请求异常: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 下发失败，status 为 IoTDA 返回的 HTTP 状态码，网络异常时为 0
+     */
+    public static class SendException extends RuntimeException {
+        private final int status;
+
+        public SendException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+
+        public SendException(int status, String message, Throwable cause) {
+            super(message, cause);
+            this.status = status;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        /** Token 失效或无权限 */
+        public boolean isAuthFailure() {
+            return status == 401 || status == 403;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,118 @@
+package com.example.edog.utils;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 运动指令合并队列（后写覆盖）
+ * 队列里最多只有一条未发送的运动指令：新的运动指令到达时挤掉旧的（旧的已经过时，发出去只会让狗多走一段）；
+ * 停止指令挤掉所有未发送的运动和停止指令并插到队首；其他指令按先后顺序排队，不参与合并
+ *
+ * 非线程安全，由调用方加锁
+ */
+public class MotionCommandQueue<T> {
+
+    public enum Kind {
+        MOTION, STOP, OTHER
+    }
+
+    private final ArrayDeque<T> queue = new ArrayDeque<>();
+    private final Function<T, String> commandOf;
+    private final Set<String> motionCommands;
+    private final Set<String> stopCommands;
+    private final int capacity;
+
+    /**
+     * @param commandOf 从元素中取出指令文本
+     * @param capacity 队列上限，只有非运动指令会把队列撑满
+     */
+    public MotionCommandQueue(Function<T, String> commandOf, Collection<String> motionCommands,
+                              Collection<String> stopCommands, int capacity) {
+        this.commandOf = commandOf;
+        this.motionCommands = new HashSet<>(motionCommands);
+        this.stopCommands = new HashSet<>(stopCommands);
+        this.capacity = Math.max(1, capacity);
+    }
+
+    public Kind kindOf(T item) {
+        String command = commandOf.apply(item);
+        if (command == null) return Kind.OTHER;
+        command = command.trim();
+        if (stopCommands.contains(command)) return Kind.STOP;
+        if (motionCommands.contains(command)) return Kind.MOTION;
+        return Kind.OTHER;
+    }
+
+    /**
+     * 入队
+     * @param superseded 收集被本条挤掉的旧指令
+     * @return false 表示队列已满，本条未入队
+     */
+    public boolean offer(T item, List<T> superseded) {
+        Kind kind = kindOf(item);
+        switch (kind) {
+            case STOP:
+                removeSuperseded(true, superseded);
+                queue.addFirst(item);
+                return true;
+            case MOTION:
+                removeSuperseded(false, superseded);
+                break;
+            default:
+                break;
+        }
+        if (queue.size() >= capacity) return false;
+        queue.addLast(item);
+        return true;
+    }
+
+    /**
+     * 正在发送（或等待重试）的 current 是否已被队列里更新的指令取代
+     */
+    public boolean supersedes(T current) {
+        Kind kind = kindOf(current);
+        if (kind == Kind.OTHER) return false;
+        for (T pending : queue) {
+            Kind pendingKind = kindOf(pending);
+            if (pendingKind == Kind.STOP) return true;
+            if (pendingKind == Kind.MOTION && kind == Kind.MOTION) return true;
+        }
+        return false;
+    }
+
+    public T peek() {
+        return queue.peekFirst();
+    }
+
+    public T poll() {
+        return queue.pollFirst();
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    /**
+     * 移除未发送的运动指令；byStop 为 true 时连同未发送的停止指令一起移除（只保留最新的一条停止）
+     */
+    private void removeSuperseded(boolean byStop, List<T> superseded) {
+        Iterator<T> it = queue.iterator();
+        while (it.hasNext()) {
+            T pending = it.next();
+            Kind kind = kindOf(pending);
+            if (kind == Kind.MOTION || (byStop && kind == Kind.STOP)) {
+                it.remove();
+                superseded.add(pending);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.edog.utils;
+
+import io.github.jaredmdobson.concentus.OpusDecoder;
+import io.github.jaredmdobson.concentus.OpusException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * Opus → 16-bit 小端 PCM 解码器（上行识别链路用）
+ * 解码缓冲、输入拷贝缓冲和输出 PCM 缓冲全部预分配复用，解码本身每帧零分配
+ *
+ * 返回的数组按帧长度复用，只在下一次解码前有效；需要留存或异步使用的调用方自行拷贝
+ * （送识别的 TranscriberPool.Lease.send、VAD 预缓存都会拷贝）
+ * 输出数组上预先建好小端 ShortBuffer 视图，short[] → byte[] 用一次批量 put 完成
+ *
+ * 一个实例对应一路音频流，非线程安全
+ */
+public class OpusPcmDecoder {
+
+    // 同时保留的不同帧长数（设备正常帧 + 静音帧）
+    private static final int MAX_BUFFERS = 4;
+    // 单帧最多 120ms@48k
+    private static final int MAX_FRAME_SAMPLES = 5760;
+
+    private final OpusDecoder decoder;
+    private final short[] pcm = new short[MAX_FRAME_SAMPLES];
+    private final PcmBuffer[] buffers = new PcmBuffer[MAX_BUFFERS];
+    private byte[] inputScratch = new byte[1500];
+    private int lastSamples = 0;
+    private int nextEvict = 0;
+
+    public OpusPcmDecoder(int sampleRate) throws OpusException {
+        this.decoder = new OpusDecoder(sampleRate, 1);
+    }
+
+    /**
+     * 直接从 WebSocket 负载解码，堆内缓冲不拷贝，直接缓冲拷到复用的输入数组
+     * @return 小端 PCM 字节，没有可用采样时返回 null
+     */
+    public byte[] decode(ByteBuffer opus) throws OpusException {
+        int length = opus.remaining();
+        if (opus.hasArray()) {
+            return decode(opus.array(), opus.arrayOffset() + opus.position(), length);
+        }
+        if (inputScratch.length < length) {
+            inputScratch = new byte[Math.max(length, inputScratch.length * 2)];
+        }
+        opus.get(opus.position(), inputScratch, 0, length);
+        return decode(inputScratch, 0, length);
+    }
+
+    /**
+     * @return 小端 PCM 字节，没有可用采样时返回 null
+     */
+    public byte[] decode(byte[] opus, int offset, int length) throws OpusException {
+        lastSamples = decoder.decode(opus, offset, length, pcm, 0, pcm.length, false);
+        if (lastSamples <= 0) {
+            lastSamples = 0;
+            return null;
+        }
+        return bufferFor(lastSamples).pack(pcm, lastSamples);
+    }
+
+    /**
+     * 最近一次解码出的采样（只读，下一次解码时会被覆盖）
+     */
+    public short[] lastPcm() {
+        return pcm;
+    }
+
+    public int lastSampleCount() {
+        return lastSamples;
+    }
+
+    private PcmBuffer bufferFor(int samples) {
+        for (PcmBuffer buffer : buffers) {
+            if (buffer != null && buffer.samples == samples) return buffer;
+        }
+        // 新的帧长：占用空位，满了就轮换淘汰
+        for (int i = 0; i < buffers.length; i++) {
+            if (buffers[i] == null) {
+                return buffers[i] = new PcmBuffer(samples);
+            }
+        }
+        PcmBuffer buffer = new PcmBuffer(samples);
+        buffers[nextEvict] = buffer;
+        nextEvict = (nextEvict + 1) % buffers.length;
+        return buffer;
+    }
+
+    /**
+     * 固定帧长的输出缓冲
+     */
+    private static final class PcmBuffer {
+        final int samples;
+        final byte[] bytes;
+        final ShortBuffer view;
+
+        PcmBuffer(int samples) {
+            this.samples = samples;
+            this.bytes = new byte[samples * 2];
+            this.view = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+        }
+
+        byte[] pack(short[] pcm, int count) {
+            view.clear();
+            view.put(pcm, 0, count);
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.edog.utils;
+
+import io.github.jaredmdobson.concentus.OpusApplication;
+import io.github.jaredmdobson.concentus.OpusEncoder;
+import io.github.jaredmdobson.concentus.OpusException;
+import io.github.jaredmdobson.concentus.OpusSignal;
+
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * 流式 Opus 编码器
+ * 输入任意采样率/声道的 16-bit PCM，按设备要求（24kHz 单声道 60ms）切帧编码，每凑满一帧就回调一次
+ * 降采样（如 MP3 解出的 44.1/48kHz）前先过一道加窗 sinc 低通，滤掉 12kHz 以上的成分，避免混叠回语音频段
+ *
+ * OpusEncoder 和帧缓冲从全局池里借用，finish/close 时归还，不再每次回复都新建；
+ * 一个实例只服务一路音频流，非线程安全
+ */
+public class OpusStreamEncoder implements AutoCloseable {
+
+    private static final int MAX_PACKET_SIZE = 4000; // Opus 帧最大大小
+
+    private static final ConcurrentLinkedQueue<EncoderSlot> POOL = new ConcurrentLinkedQueue<>();
+
+    // 抗混叠低通的阶数（奇数，对称 FIR），48kHz 下群延迟约 0.5ms
+    private static final int LOW_PASS_TAPS = 47;
+    // 截止频率取目标奈奎斯特频率的 90%，给过渡带留余量
+    private static final double LOW_PASS_CUTOFF_RATIO = 0.9;
+    // 按输入采样率缓存滤波器系数
+    private static final Map<Integer, float[]> LOW_PASS_CACHE = new ConcurrentHashMap<>();
+
+    private final Consumer<byte[]> frameSink;
+    private final boolean resample;
+    private final double step;
+
+    private EncoderSlot slot;
+    private int filled = 0;
+    private int frameCount = 0;
+
+    // 抗混叠低通，仅降采样时使用；history 存两份，卷积时不用取模
+    private final float[] lowPass;
+    private final int[] history;
+    private int historyPos = 0;
+
+    // 线性插值重采样状态
+    private boolean hasPrev = false;
+    private int prev = 0;
+    private double pos = 0;
+
+    /**
+     * @param sourceSampleRate 输入 PCM 采样率
+     * @param frameSink 编码好的 Opus 帧回调
+     */
+    public OpusStreamEncoder(int sourceSampleRate, Consumer<byte[]> frameSink) throws OpusException {
+        this.frameSink = frameSink;
+        this.resample = sourceSampleRate != AudioConverter.SAMPLE_RATE;
+        this.step = (double) sourceSampleRate / AudioConverter.SAMPLE_RATE;
+        if (sourceSampleRate > AudioConverter.SAMPLE_RATE) {
+            this.lowPass = LOW_PASS_CACHE.computeIfAbsent(sourceSampleRate, OpusStreamEncoder::designLowPass);
+            this.history = new int[LOW_PASS_TAPS * 2];
+        } else {
+            this.lowPass = null;
+            this.history = null;
+        }
+        this.slot = acquire();
+    }
+
+    /**
+     * 写入交错排列的 PCM 采样，多声道会先混成单声道
+     * @param length 采样点总数（含所有声道）
+     */
+    public void write(short[] pcm, int offset, int length, int channels) {
+        int end = offset + length;
+        if (channels <= 1 && !resample) {
+            int i = offset;
+            while (i < end) {
+                int n = Math.min(end - i, AudioConverter.FRAME_SIZE - filled);
+                System.arraycopy(pcm, i, slot.frame, filled, n);
+                filled += n;
+                i += n;
+                if (filled == AudioConverter.FRAME_SIZE) encodeFrame();
+            }
+            return;
+        }
+        for (int i = offset; i + channels <= end; i += channels) {
+            int sample = pcm[i];
+            if (channels > 1) {
+                for (int c = 1; c < channels; c++) sample += pcm[i + c];
+                sample /= channels;
+            }
+            pushSample(sample);
+        }
+    }
+
+    /**
+     * 写入单声道 PCM（直接批量拷贝进帧缓冲，不做中间数组）
+     */
+    public void write(ShortBuffer pcm) {
+        if (resample) {
+            while (pcm.hasRemaining()) pushSample(pcm.get());
+            return;
+        }
+        while (pcm.hasRemaining()) {
+            int n = Math.min(pcm.remaining(), AudioConverter.FRAME_SIZE - filled);
+            pcm.get(slot.frame, filled, n);
+            filled += n;
+            if (filled == AudioConverter.FRAME_SIZE) encodeFrame();
+        }
+    }
+
+    /**
+     * 结束编码：剩余不足一帧的数据补零（静音）后编码，并归还编码器
+     * @return 本路音频总帧数
+     */
+    public int finish() {
+        if (slot != null && filled > 0) {
+            Arrays.fill(slot.frame, filled, AudioConverter.FRAME_SIZE, (short) 0);
+            filled = AudioConverter.FRAME_SIZE;
+            encodeFrame();
+        }
+        close();
+        return frameCount;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * 丢弃未编码的数据并归还编码器，可重复调用
+     */
+    @Override
+    public void close() {
+        if (slot != null) {
+            POOL.offer(slot);
+            slot = null;
+        }
+    }
+
+    private void pushSample(int sample) {
+        if (!resample) {
+            appendSample(sample);
+            return;
+        }
+        if (lowPass != null) {
+            sample = filter(sample);
+        }
+        if (!hasPrev) {
+            prev = sample;
+            hasPrev = true;
+            return;
+        }
+        while (pos < 1.0) {
+            appendSample((int) (prev + (sample - prev) * pos));
+            pos += step;
+        }
+        pos -= 1.0;
+        prev = sample;
+    }
+
+    private int filter(int sample) {
+        history[historyPos] = sample;
+        history[historyPos + LOW_PASS_TAPS] = sample;
+        if (++historyPos == LOW_PASS_TAPS) historyPos = 0;
+        // 系数对称，history[historyPos .. historyPos + TAPS) 即最近 TAPS 个采样
+        float acc = 0;
+        for (int k = 0; k < LOW_PASS_TAPS; k++) {
+            acc += lowPass[k] * history[historyPos + k];
+        }
+        return Math.round(acc);
+    }
+
+    /**
+     * Hamming 窗 sinc 低通，截止频率按目标采样率的奈奎斯特频率换算到输入采样率，直流增益归一为 1
+     */
+    private static float[] designLowPass(int sourceSampleRate) {
+        double cutoff = LOW_PASS_CUTOFF_RATIO * AudioConverter.SAMPLE_RATE / 2.0 / sourceSampleRate;
+        int mid = LOW_PASS_TAPS / 2;
+        double[] h = new double[LOW_PASS_TAPS];
+        double sum = 0;
+        for (int n = 0; n < LOW_PASS_TAPS; n++) {
+            int m = n - mid;
+            double sinc = m == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * m) / (Math.PI * m);
+            double window = 0.54 - 0.46 * Math.cos(2 * Math.PI * n / (LOW_PASS_TAPS - 1));
+            h[n] = sinc * window;
+            sum += h[n];
+        }
+        float[] taps = new float[LOW_PASS_TAPS];
+        for (int n = 0; n < LOW_PASS_TAPS; n++) taps[n] = (float) (h[n] / sum);
+        return taps;
+    }
+
+    private void appendSample(int sample) {
+        slot.frame[filled++] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sample));
+        if (filled == AudioConverter.FRAME_SIZE) encodeFrame();
+    }
+
+    private void encodeFrame() {
+        filled = 0;
+        try {
+            int encodedBytes = slot.encoder.encode(slot.frame, 0, AudioConverter.FRAME_SIZE,
+                    slot.packet, 0, slot.packet.length);
+            if (encodedBytes > 0) {
+                byte[] opusFrame = new byte[encodedBytes];
+                System.arraycopy(slot.packet, 0, opusFrame, 0, encodedBytes);
+                frameCount++;
+                frameSink.accept(opusFrame);
+            }
+        } catch (OpusException e) {
+            System.err.println("Opus 编码异常: " + e.getMessage());
+        }
+    }
+
+    private static EncoderSlot acquire() throws OpusException {
+        EncoderSlot slot = POOL.poll();
+        if (slot == null) {
+            return new EncoderSlot();
+        }
+        // 复用前清掉上一路音频残留的编码状态
+        slot.encoder.resetState();
+        return slot;
+    }
+
+    /**
+     * 编码器 + 帧缓冲 + 输出缓冲，作为一个整体池化
+     */
+    private static final class EncoderSlot {
+        final OpusEncoder encoder;
+        final short[] frame = new short[AudioConverter.FRAME_SIZE];
+        final byte[] packet = new byte[MAX_PACKET_SIZE];
+
+        EncoderSlot() throws OpusException {
+            encoder = new OpusEncoder(AudioConverter.SAMPLE_RATE, AudioConverter.CHANNELS, OpusApplication.OPUS_APPLICATION_VOIP);
+            encoder.setBitrate(AudioConverter.BITRATE);
+            encoder.setSignalType(OpusSignal.OPUS_SIGNAL_VOICE);
+        }
+    }
+}
@@ -1,8 +1,7 @@
 package com.example.edog.utils;
 
-import com.example.edog.entity.Command;
-import com.example.edog.service.CommandService;
-import lombok.Getter;
+import com.example.edog.configurer.EdogProperties;
+import com.example.edog.service.CommandCache;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -14,28 +13,54 @@ import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * 命令通道：按账号把手机端和机械狗端配成一对，消息只在同一对之间转发
+ * 绑定消息：role=app&account=123456 / role=dog&account=123456
+ *
+ * 旧固件（role=dog 不带账号）：配置了 edog.device.legacy-account 时归到该账号，手机端登录该账号、
+ * 不带账号的 ESP32 语音连接也归到该账号，即原来的单狗部署；未配置时关闭连接，固件需在绑定消息里带 account
+ *
+ * 发给机械狗的消息经过每只狗一条的指令通道：未发出的运动指令被更新的运动指令覆盖，stop 插队并清掉之前的运动，
+ * 发送频率不超过 edog.motion.max-rate-per-second（stop 不限速）
+ */
 @Service
 public class OrderWebSocketHandler extends TextWebSocketHandler {
 
     @Autowired
-    private CommandService commandService;
+    private CommandCache commandCache;
 
-    // 单设备模式
-    private static WebSocketSession appSession = null; // 手机端
-    private static WebSocketSession dogSession = null; // 机械狗端
+    // 账号 -> 设备对
+    private static final Map<String, DevicePair> pairs = new ConcurrentHashMap<>();
+    // 会话 ID -> 绑定关系，收到消息时 O(1) 找到对端
+    private static final Map<String, Binding> bindings = new ConcurrentHashMap<>();
 
-    /**
-     * -- GETTER --
-     *  对外公开：获取当前登录账号（供 WebSocketService 使用）
-     */
-    // 当前手机账号
-    @Getter
-    private static String currentAccount = null;
+    // 运动指令限速配置，设备对是静态的，配置也放静态字段
+    private static volatile EdogProperties.Motion motion = new EdogProperties.Motion();
+    // 所有狗共用的限速发送线程
+    private static final ScheduledExecutorService motionScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "order-motion");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final AtomicLong coalesced = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+
+    // 不带账号的旧固件归属的账号，为 null 时拒绝
+    private String legacyAccount;
 
-    // 当前账号的命令列表（content-message 二维数组）
-    @Getter
-    private static List<String[]> commandList = new ArrayList<>();
+    @Autowired
+    public void setEdogProperties(EdogProperties properties) {
+        motion = properties.getMotion();
+        legacyAccount = properties.getDevice().legacyAccountOrNull();
+    }
 
     @Override
     public void afterConnectionEstablished(@NotNull WebSocketSession session) {
@@ -53,32 +78,39 @@ public class OrderWebSocketHandler extends TextWebSocketHandler {
             return;
         }
 
-        // 如果消息来自手机端，转发给机械狗
-        if (session.equals(appSession)) {
-            if (dogSession != null && dogSession.isOpen()) {
-                dogSession.sendMessage(new TextMessage(payload));
-                System.out.println("（order） 从手机 -> 机械狗: " + payload);
+        Binding binding = bindings.get(session.getId());
+        if (binding == null) {
+            System.err.println("（order） 未绑定的连接发来消息，已忽略: " + session.getId());
+            return;
+        }
+        DevicePair pair = binding.pair;
+
+        // 如果消息来自手机端，转发给同账号的机械狗
+        if (binding.isApp) {
+            WebSocketSession dog = pair.dog;
+            if (dog != null && dog.isOpen()) {
+                pair.channel.submit(payload, "手机");
             } else {
-                System.err.println("（order） 没有机械狗在线");
+                System.err.println("（order） [" + pair.account + "] 没有机械狗在线");
             }
         }
 
-        // 如果消息来自机械狗，转发给手机端
-        else if (session.equals(dogSession)) {
-            if (appSession != null && appSession.isOpen()) {
-                appSession.sendMessage(new TextMessage(payload));
-                System.out.println("（order） 从机械狗 -> 手机: " + payload);
+        // 如果消息来自机械狗，转发给同账号的手机端
+        else {
+            WebSocketSession app = pair.app;
+            if (app != null && app.isOpen()) {
+                app.sendMessage(new TextMessage(payload));
+                System.out.println("（order） [" + pair.account + "] 从机械狗 -> 手机: " + payload);
             } else {
-                System.err.println("（order） 没有手机在线");
+                System.err.println("（order） [" + pair.account + "] 没有手机在线");
             }
         }
     }
 
     /**
-     * 处理绑定消息（app需要账号，dog不需要）
+     * 处理绑定消息
      */
-    private void handleBindMessage(WebSocketSession session, String payload) {
-        // 示例: role=app&account=123456 或 role=dog
+    private void handleBindMessage(WebSocketSession session, String payload) throws IOException {
         String[] parts = payload.split("&");
         String role = null;
         String account = null;
@@ -98,52 +130,107 @@ public class OrderWebSocketHandler extends TextWebSocketHandler {
             return;
         }
 
-        switch (role) {
-            case "app":
-                appSession = session;
-                System.out.println("（order） 手机端已绑定");
-                if (account != null && !account.isEmpty()) {
-                    currentAccount = account;
-                    loadCommandList(account);
-                } else {
-                    System.err.println("（order） 手机端未提供账号，部分功能将受限");
-                }
-                break;
-
-            case "dog":
-                dogSession = session;
-                System.out.println("（order） 机械狗端已绑定（无需账号）");
-                break;
+        if (!"app".equals(role) && !"dog".equals(role)) {
+            System.err.println("（order） 未知角色: " + role);
+            return;
+        }
+        String name = "app".equals(role) ? "手机端" : "机械狗端";
 
-            default:
-                System.err.println("（order） 未知角色: " + role);
-                break;
+        if (account == null || account.isEmpty()) {
+            if (legacyAccount == null) {
+                System.err.println("（order） " + name + "未提供账号，已断开：固件需发送 role=" + role
+                        + "&account=<账号>，或配置 edog.device.legacy-account");
+                session.close(CloseStatus.POLICY_VIOLATION.withReason("account required"));
+                return;
+            }
+            account = legacyAccount;
+            System.out.println("（order） " + name + "未提供账号，按旧固件归到账号 " + account);
         }
+
+        bind(session, account, "app".equals(role));
+        System.out.println("（order） " + name + "已绑定账号 " + account);
+        loadCommandList(account);
     }
 
     /**
-     * 从数据库加载命令列表
+     * 绑定与释放都在 pairs.compute 内完成（同一账号串行），
+     * 不会出现设备对刚被断开的另一端移出 pairs、这一端却绑到了这个已移除的设备对上
+     */
+    private void bind(WebSocketSession session, String account, boolean isApp) {
+        // 同一连接换绑到别的账号，先从原账号释放
+        Binding previous = bindings.get(session.getId());
+        if (previous != null && !previous.pair.account.equals(account)) release(session, previous);
+
+        pairs.compute(account, (key, pair) -> {
+            if (pair == null) pair = new DevicePair(key);
+            WebSocketSession old = isApp ? pair.app : pair.dog;
+            if (old != null && old != session) bindings.remove(old.getId());
+            if (isApp) {
+                pair.app = session;
+            } else {
+                pair.dog = session;
+            }
+            bindings.put(session.getId(), new Binding(pair, isApp));
+            return pair;
+        });
+    }
+
+    /**
+     * 解除连接与设备对的绑定，两端都断开后释放该账号
+     */
+    private void release(WebSocketSession session, Binding binding) {
+        DevicePair target = binding.pair;
+        boolean[] dogGone = {false};
+        pairs.computeIfPresent(target.account, (key, pair) -> {
+            if (pair != target) return pair;
+            if (binding.isApp) {
+                if (pair.app == session) pair.app = null;
+            } else if (pair.dog == session) {
+                pair.dog = null;
+                dogGone[0] = true;
+            }
+            if (pair.app != null || pair.dog != null) return pair;
+            // 在 compute 内清缓存，之后同账号重新绑定时会重新加载
+            commandCache.evict(key);
+            return null;
+        });
+        if (dogGone[0]) target.channel.clear();
+    }
+
+    /**
+     * 加载账号命令到缓存（已缓存则不访问数据库），之后的增删改由缓存增量更新
      */
     private void loadCommandList(String account) {
-        commandList.clear();
-        List<Command> commands = commandService.getAllCommandByAccount(account);
-        for (Command cmd : commands) {
-            commandList.add(new String[]{cmd.getContent(), cmd.getMessage()});
+        try {
+            CommandCache.Snapshot snapshot = commandCache.load(account);
+            System.out.println("（order） 账号 " + account + " 的命令: " + snapshot.size() + " 条");
+        } catch (Exception e) {
+            System.err.println("（order）加载命令列表失败: " + e.getMessage());
         }
-        System.out.println("（order） 已加载账号 " + account + " 的命令: " + commandList.size() + " 条");
     }
 
     /**
-     * 服务器主动发送消息
+     * 服务器主动向指定账号的设备发送消息
      */
-    public static void sendMessage(String role, String message) {
+    public static void sendMessage(String account, String role, String message) {
         try {
-            WebSocketSession targetSession = null;
+            DevicePair pair = account == null ? null : pairs.get(account);
+            if (pair == null) {
+                System.err.println("（order）账号 " + account + " 没有在线设备");
+                return;
+            }
 
+            WebSocketSession targetSession;
             if ("phone".equalsIgnoreCase(role) || "app".equalsIgnoreCase(role)) {
-                targetSession = appSession;
+                targetSession = pair.app;
             } else if ("device".equalsIgnoreCase(role) || "dog".equalsIgnoreCase(role)) {
-                targetSession = dogSession;
+                // 发给狗的走指令通道，和手机端的指令一起合并限速
+                if (pair.dog != null && pair.dog.isOpen()) {
+                    pair.channel.submit(message, "服务器");
+                } else {
+                    System.err.println("（order）[" + account + "] 目标设备未在线");
+                }
+                return;
             } else {
                 System.err.println("（order）无效的发送目标角色: " + role);
                 return;
@@ -151,50 +238,144 @@ public class OrderWebSocketHandler extends TextWebSocketHandler {
 
             if (targetSession != null && targetSession.isOpen()) {
                 targetSession.sendMessage(new TextMessage(message));
-                System.out.println("（order）服务器 -> " + role + ": " + message);
+                System.out.println("（order）服务器 -> [" + account + "] " + role + ": " + message);
             } else {
-                System.err.println("（order）目标设备未在线");
+                System.err.println("（order）[" + account + "] 目标设备未在线");
             }
         } catch (IOException e) {
             System.err.println("（order）发送消息失败: " + e.getMessage());
         }
     }
 
+    /**
+     * 被更新的运动指令覆盖而未发送的指令数
+     */
+    public static long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * 被 stop 清掉、或狗已离线而未发送的指令数
+     */
+    public static long getDroppedCount() {
+        return dropped.get();
+    }
+
     @Override
     public void afterConnectionClosed(@NotNull WebSocketSession session, @NotNull CloseStatus status) {
-        if (session.equals(appSession)) {
-            appSession = null;
-            System.out.println("（order）手机端断开连接");
-            currentAccount = null;
-            commandList.clear();
-        } else if (session.equals(dogSession)) {
-            dogSession = null;
-            System.out.println("（order） 机械狗端断开连接");
+        Binding binding = bindings.remove(session.getId());
+        if (binding == null) return;
+
+        release(session, binding);
+        System.out.println("（order）[" + binding.pair.account + "] " + (binding.isApp ? "手机端" : "机械狗端") + "断开连接");
+    }
+
+    /**
+     * 同一账号的手机端与机械狗端
+     */
+    private static final class DevicePair {
+        final String account;
+        volatile WebSocketSession app;
+        volatile WebSocketSession dog;
+        final DogChannel channel = new DogChannel(this);
+
+        DevicePair(String account) {
+            this.account = account;
         }
     }
 
     /**
-     * 对外公开刷新当前命令列表的静态方法
+     * 发往一只狗的指令通道，所有发往该狗的消息都在通道锁内发送，不会并发写同一个会话
      */
-    public static void refreshCommandList(String account) {
-        if (account == null || account.isEmpty()) {
-            System.err.println("（order）无法刷新命令列表：账号为空");
-            return;
+    private static final class DogChannel {
+        private final DevicePair pair;
+        private final MotionCommandQueue<String> queue;
+        private ScheduledFuture<?> pending;
+        private long lastSentAt = 0;
+
+        DogChannel(DevicePair pair) {
+            EdogProperties.Motion config = motion;
+            this.pair = pair;
+            this.queue = new MotionCommandQueue<>(s -> s, config.getMotionCommands(),
+                    config.getStopCommands(), config.getQueueCapacity());
         }
 
-        try {
-            CommandService service = SpringContextUtil.getBean(CommandService.class);
-            commandList.clear();
+        synchronized void submit(String message, String from) {
+            List<String> superseded = new ArrayList<>();
+            if (!queue.offer(message, superseded)) {
+                dropped.incrementAndGet();
+                System.err.println("（order） [" + pair.account + "] 指令队列已满，丢弃: " + message);
+                return;
+            }
+            boolean stop = queue.kindOf(message) == MotionCommandQueue.Kind.STOP;
+            if (!superseded.isEmpty()) {
+                (stop ? dropped : coalesced).addAndGet(superseded.size());
+                System.out.println("（order） [" + pair.account + "] " + message + " 覆盖未发送的指令: " + superseded);
+            }
+            System.out.println("（order） [" + pair.account + "] 从" + from + " -> 机械狗指令队列: " + message);
 
-            List<Command> commands = service.getAllCommandByAccount(account);
-            for (Command cmd : commands) {
-                commandList.add(new String[]{cmd.getContent(), cmd.getMessage()});
+            if (stop) {
+                // stop 不等限速，取消已排的发送立即处理
+                if (pending != null) pending.cancel(false);
+                pending = null;
+                drain();
+            } else if (pending == null) {
+                drain();
             }
+        }
 
-            System.out.println("（order）命令列表已刷新，共 " + commandList.size() + " 条");
-        } catch (Exception e) {
-            System.err.println("（order）刷新命令列表失败: " + e.getMessage());
+        /**
+         * 按限速发出队列里的指令，未到间隔时排一次延迟发送后返回
+         */
+        private synchronized void drain() {
+            pending = null;
+            long interval = motion.minIntervalMs();
+            String message;
+            while ((message = queue.peek()) != null) {
+                WebSocketSession dog = pair.dog;
+                if (dog == null || !dog.isOpen()) {
+                    clear();
+                    return;
+                }
+                long wait = lastSentAt + interval - System.currentTimeMillis();
+                if (wait > 0 && queue.kindOf(message) != MotionCommandQueue.Kind.STOP) {
+                    pending = motionScheduler.schedule(this::drain, wait, TimeUnit.MILLISECONDS);
+                    return;
+                }
+                queue.poll();
+                try {
+                    dog.sendMessage(new TextMessage(message));
+                    lastSentAt = System.currentTimeMillis();
+                    System.out.println("（order） [" + pair.account + "] -> 机械狗: " + message);
+                } catch (IOException | IllegalStateException e) {
+                    dropped.incrementAndGet();
+                    System.err.println("（order） [" + pair.account + "] 发送给机械狗失败: " + e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * 狗离线时丢弃未发送的指令
+         */
+        synchronized void clear() {
+            if (pending != null) pending.cancel(false);
+            pending = null;
+            int n = 0;
+            while (queue.poll() != null) n++;
+            if (n > 0) {
+                dropped.addAndGet(n);
+                System.err.println("（order） [" + pair.account + "] 机械狗离线，丢弃未发送的指令 " + n + " 条");
+            }
         }
     }
 
+    private static final class Binding {
+        final DevicePair pair;
+        final boolean isApp;
+
+        Binding(DevicePair pair, boolean isApp) {
+            this.pair = pair;
+            this.isApp = isApp;
+        }
+    }
 }
@@ -1,43 +1,122 @@
 package com.example.edog.utils;
 
 import net.sourceforge.pinyin4j.PinyinHelper;
-import java.util.*;
 
+import java.util.Arrays;
+
+/**
+ * 拼音与字符相似度工具
+ * 汉字 → 拼音走预先建好的查表（基本汉字区 U+4E00–U+9FA5），不再逐字跑正则；
+ * 相似度基于字符频次的余弦，排序后按游程合并计算，只用线程内复用的 char[]，稳态下不分配对象
+ */
 public class PinyinUtils {
 
+    private static final char CJK_START = '\u4E00';
+    private static final char CJK_END = '\u9FA5';
+
+    // 相似度计算用的排序缓冲，按线程复用
+    private static final ThreadLocal<char[][]> SCRATCH = ThreadLocal.withInitial(() -> new char[][]{new char[64], new char[64]});
+
+    /**
+     * 拼音查表，首次使用时构建（约两万字，构建一次即可）
+     */
+    private static final class Table {
+        static final String[] PINYIN = build();
+
+        private static String[] build() {
+            String[] table = new String[CJK_END - CJK_START + 1];
+            for (char c = CJK_START; c <= CJK_END; c++) {
+                String[] pinyin = PinyinHelper.toHanyuPinyinStringArray(c);
+                if (pinyin == null || pinyin.length == 0) continue;
+                StringBuilder sb = new StringBuilder(pinyin[0].length());
+                for (int i = 0; i < pinyin[0].length(); i++) {
+                    char p = pinyin[0].charAt(i);
+                    if ((p >= 'a' && p <= 'z') || (p >= 'A' && p <= 'Z')) sb.append(Character.toLowerCase(p));
+                }
+                table[c - CJK_START] = sb.toString();
+            }
+            return table;
+        }
+    }
+
     /** 中文转拼音（不带声调） */
     public static String toPinyin(String text) {
         if (text == null) return "";
-        StringBuilder sb = new StringBuilder();
-        for (char c : text.toCharArray()) {
-            if (Character.toString(c).matches("[\\u4E00-\\u9FA5]+")) {
-                String[] pinyin = PinyinHelper.toHanyuPinyinStringArray(c);
-                if (pinyin != null) sb.append(pinyin[0].replaceAll("[^a-zA-Z]", ""));
+        String[] table = Table.PINYIN;
+        StringBuilder sb = new StringBuilder(text.length() * 4);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= CJK_START && c <= CJK_END) {
+                String pinyin = table[c - CJK_START];
+                if (pinyin != null) sb.append(pinyin);
             } else {
-                sb.append(c);
+                sb.append(Character.toLowerCase(c));
             }
         }
-        return sb.toString().toLowerCase();
+        return sb.toString();
     }
 
-    /** 余弦相似度 */
+    /** 余弦相似度（按字符频次） */
     public static double similarity(String s1, String s2) {
         if (s1 == null || s2 == null) return 0;
+        // 与旧实现保持一致：两个空串视为相同
+        if (s1.isEmpty() && s2.isEmpty()) return 1;
 
-        Map<String, int[]> vector = new HashMap<>();
-        for (String s : s1.split("")) {
-            vector.computeIfAbsent(s, k -> new int[2])[0]++;
+        char[][] scratch = SCRATCH.get();
+        char[] a = sorted(scratch, 0, s1);
+        char[] b = sorted(scratch, 1, s2);
+        int na = s1.length(), nb = s2.length();
+
+        long norm1 = sumSquares(a, na);
+        long norm2 = sumSquares(b, nb);
+        if (norm1 == 0 || norm2 == 0) return 0;
+
+        long dot = 0;
+        int i = 0, j = 0;
+        while (i < na && j < nb) {
+            char ca = a[i], cb = b[j];
+            if (ca < cb) {
+                i = runEnd(a, i, na);
+            } else if (ca > cb) {
+                j = runEnd(b, j, nb);
+            } else {
+                int ei = runEnd(a, i, na), ej = runEnd(b, j, nb);
+                dot += (long) (ei - i) * (ej - j);
+                i = ei;
+                j = ej;
+            }
         }
-        for (String s : s2.split("")) {
-            vector.computeIfAbsent(s, k -> new int[2])[1]++;
+        return dot / Math.sqrt(norm1) / Math.sqrt(norm2);
+    }
+
+    /**
+     * 把字符串拷进线程缓冲并排序
+     */
+    private static char[] sorted(char[][] scratch, int slot, String s) {
+        char[] buf = scratch[slot];
+        if (buf.length < s.length()) {
+            buf = scratch[slot] = new char[Math.max(s.length(), buf.length * 2)];
         }
+        s.getChars(0, s.length(), buf, 0);
+        Arrays.sort(buf, 0, s.length());
+        return buf;
+    }
 
-        double dot = 0, norm1 = 0, norm2 = 0;
-        for (int[] v : vector.values()) {
-            dot += v[0] * v[1];
-            norm1 += v[0] * v[0];
-            norm2 += v[1] * v[1];
+    private static long sumSquares(char[] sorted, int n) {
+        long sum = 0;
+        for (int i = 0; i < n; ) {
+            int end = runEnd(sorted, i, n);
+            long k = end - i;
+            sum += k * k;
+            i = end;
         }
-        return (norm1 == 0 || norm2 == 0) ? 0 : (dot / Math.sqrt(norm1) / Math.sqrt(norm2));
+        return sum;
+    }
+
+    private static int runEnd(char[] sorted, int start, int n) {
+        char c = sorted[start];
+        int i = start + 1;
+        while (i < n && sorted[i] == c) i++;
+        return i;
     }
-}
\ No newline at end of file
+}
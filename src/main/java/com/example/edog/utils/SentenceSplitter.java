@@ -0,0 +1,50 @@
+package com.example.edog.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 流式文本断句工具
+ * 把 LLM 的增量输出按句末标点切成完整句子，非线程安全，每轮回复一个实例
+ */
+public class SentenceSplitter {
+
+    // 句末标点
+    private static final String TERMINATORS = "。！？!?；;\n";
+
+    private final StringBuilder pending = new StringBuilder();
+
+    /**
+     * 追加一段增量文本
+     * @return 本次凑齐的完整句子，没有则返回空列表
+     */
+    public List<String> append(String delta) {
+        if (delta == null || delta.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> sentences = null;
+        for (int i = 0; i < delta.length(); i++) {
+            char c = delta.charAt(i);
+            pending.append(c);
+            if (TERMINATORS.indexOf(c) >= 0) {
+                String sentence = pending.toString().trim();
+                pending.setLength(0);
+                if (!sentence.isEmpty()) {
+                    if (sentences == null) sentences = new ArrayList<>(2);
+                    sentences.add(sentence);
+                }
+            }
+        }
+        return sentences == null ? Collections.emptyList() : sentences;
+    }
+
+    /**
+     * 取出剩余不足一句的文本并清空缓冲
+     */
+    public String flush() {
+        String rest = pending.toString().trim();
+        pending.setLength(0);
+        return rest;
+    }
+}
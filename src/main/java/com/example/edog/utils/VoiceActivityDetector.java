@@ -0,0 +1,98 @@
+package com.example.edog.utils;
+
+/**
+ * 基于能量 + 过零率的语音活动检测（VAD）
+ * 噪声底噪自适应跟踪：静音段缓慢上调、遇到更低能量立即下调；
+ * 能量高出底噪 energyMarginDb 且过零率不像白噪声时判为语音帧
+ *
+ * 状态机：连续语音累计 startMs 进入说话态，之后静音持续 hangoverMs 才退出；
+ * hangover 需大于识别服务端的断句静音阈值（阿里云默认 800ms），否则服务端收不到句尾静音无法断句
+ *
+ * 一个实例对应一路音频流，非线程安全
+ */
+public class VoiceActivityDetector {
+
+    // 高于此过零率且能量不够突出时视为噪声（嘶嘶声、风噪）
+    private static final double MAX_SPEECH_ZCR = 0.35;
+    private static final double NOISE_FLOOR_INIT_DB = -60;
+    private static final double NOISE_FLOOR_RISE = 0.02;
+
+    private final int sampleRate;
+    private final int startMs;
+    private final int hangoverMs;
+    private final double energyMarginDb;
+    private final double minEnergyDb;
+
+    private double noiseFloorDb = NOISE_FLOOR_INIT_DB;
+    private boolean speaking = false;
+    private int activeMs = 0;
+    private int silentMs = 0;
+
+    /**
+     * @param sampleRate PCM 采样率
+     * @param startMs 连续多少毫秒语音才判定开始说话
+     * @param hangoverMs 说话后静音多久判定结束
+     * @param energyMarginDb 语音能量需高出底噪的分贝数
+     * @param minEnergyDb 绝对能量下限（dBFS），低于此一律视为静音
+     */
+    public VoiceActivityDetector(int sampleRate, int startMs, int hangoverMs, double energyMarginDb, double minEnergyDb) {
+        this.sampleRate = sampleRate;
+        this.startMs = startMs;
+        this.hangoverMs = hangoverMs;
+        this.energyMarginDb = energyMarginDb;
+        this.minEnergyDb = minEnergyDb;
+    }
+
+    /**
+     * 分析一帧 PCM
+     * @return true 表示当前处于说话态（含 hangover），本帧应送识别
+     */
+    public boolean process(short[] pcm, int samples) {
+        if (samples <= 0) return speaking;
+        int frameMs = samples * 1000 / sampleRate;
+
+        long sumSquares = 0;
+        int crossings = 0;
+        short prev = pcm[0];
+        for (int i = 0; i < samples; i++) {
+            short s = pcm[i];
+            sumSquares += (long) s * s;
+            if ((s ^ prev) < 0) crossings++;
+            prev = s;
+        }
+        double rms = Math.sqrt((double) sumSquares / samples);
+        double energyDb = rms < 1 ? -96 : 20 * Math.log10(rms / 32768.0);
+        double zcr = (double) crossings / samples;
+
+        double threshold = Math.max(minEnergyDb, noiseFloorDb + energyMarginDb);
+        boolean active = energyDb > threshold
+                && (zcr < MAX_SPEECH_ZCR || energyDb > threshold + energyMarginDb);
+
+        if (!active) {
+            // 只在非语音帧上跟踪底噪
+            noiseFloorDb = energyDb < noiseFloorDb
+                    ? energyDb
+                    : noiseFloorDb + (energyDb - noiseFloorDb) * NOISE_FLOOR_RISE;
+        }
+
+        if (active) {
+            activeMs += frameMs;
+            silentMs = 0;
+            if (!speaking && activeMs >= startMs) speaking = true;
+        } else {
+            activeMs = 0;
+            if (speaking) {
+                silentMs += frameMs;
+                if (silentMs >= hangoverMs) {
+                    speaking = false;
+                    silentMs = 0;
+                }
+            }
+        }
+        return speaking;
+    }
+
+    public boolean isSpeaking() {
+        return speaking;
+    }
+}
@@ -0,0 +1,13 @@
+-- Command 表 (account, content) 唯一索引
+-- CommandMapper.upsertCommand 用 INSERT ... ON DUPLICATE KEY UPDATE 写命令，依赖这个索引；
+-- 没有索引时同一命令会被并发插入多条。部署新版本前在 EDOG 库执行一次
+
+-- 1. 清理已有的重复命令：同账号同内容只保留 id 最大（最后写入）的一条
+DELETE c1 FROM Command c1
+JOIN Command c2
+  ON c1.account = c2.account
+ AND c1.content = c2.content
+ AND c1.id < c2.id;
+
+-- 2. 加唯一索引
+ALTER TABLE Command ADD UNIQUE KEY uk_account_content (account, content);
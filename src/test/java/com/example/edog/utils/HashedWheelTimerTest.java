@@ -0,0 +1,66 @@
+package com.example.edog.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 到期时刻恰好是整圈（或整圈倍数）之后的任务，落在正在处理的槽位上，不能提前一圈执行
+ */
+class HashedWheelTimerTest {
+
+    private static final long TICK_MS = 10;
+    private static final int WHEEL_SIZE = 8;
+    private static final long SPAN_MS = TICK_MS * WHEEL_SIZE;
+
+    private HashedWheelTimer timer;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        timer = new HashedWheelTimer("wheel-test", TICK_MS, WHEEL_SIZE);
+        // 让时间轮先转几格，避免从 0 号槽位开始的特殊情况
+        Thread.sleep(TICK_MS * 3 + TICK_MS / 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    void delayOfOneWheelSpanFiresOnTime() throws InterruptedException {
+        assertFiresAfter(SPAN_MS);
+    }
+
+    @Test
+    void delayOfSeveralWheelSpansFiresOnTime() throws InterruptedException {
+        assertFiresAfter(SPAN_MS * 3);
+    }
+
+    @Test
+    void periodEqualToWheelSpanKeepsItsRate() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(3);
+        long begin = System.nanoTime();
+        HashedWheelTimer.Timeout timeout = timer.scheduleAtFixedRate(fired::countDown, SPAN_MS, SPAN_MS);
+        assertTrue(fired.await(SPAN_MS * 10, TimeUnit.MILLISECONDS));
+        timeout.cancel();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        assertTrue(elapsedMs >= SPAN_MS * 3 - TICK_MS, "三次执行不应早于三圈: " + elapsedMs + " ms");
+    }
+
+    private void assertFiresAfter(long delayMs) throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        long begin = System.nanoTime();
+        timer.schedule(fired::countDown, delayMs);
+        assertTrue(fired.await(delayMs + SPAN_MS * 2, TimeUnit.MILLISECONDS), "任务未执行");
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        // 按 tick 取整，允许早不到一个 tick 的计时误差；迟到不超过两个 tick
+        assertTrue(elapsedMs >= delayMs - TICK_MS, "提前执行: 延迟 " + delayMs + " ms, 实际 " + elapsedMs + " ms");
+        assertTrue(elapsedMs <= delayMs + TICK_MS * 2 + 50, "执行过晚: 延迟 " + delayMs + " ms, 实际 " + elapsedMs + " ms");
+    }
+}